@@ -14,6 +14,8 @@ FROM student;
 SELECT *
 FROM student
 WHERE name ILIKE '%e%';
+-- Такой запрос без индекса - последовательный просмотр таблицы. Приложение ищет по имени (GET /students/search)
+-- через lower(name) LIKE '%...%' с GIN-индексом pg_trgm, см. src/main/resources/db/migration/postgresql
 
 -- 4. Получить всех студентов, у которых возраст меньше идентификатора
 SELECT *
@@ -0,0 +1,50 @@
+package ru.hogwarts.school;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Запуск приложения для бенчмарков: без веб-сервера (или с ним на случайном порту), на своей H2 в памяти и без SQL в логе.
+ * Остальные настройки - из src/test/resources/application.properties (тестовый classpath)
+ */
+public final class BenchmarkApplication {
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * @param properties настройки вида {@code key=value}; передаются как аргументы командной строки,
+     *                   поэтому перекрывают application.properties
+     */
+    public static ConfigurableApplicationContext start(String... properties) {
+        return run(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * То же с Tomcat на случайном порту; порт - {@code local.server.port} в окружении контекста
+     */
+    public static ConfigurableApplicationContext startWeb(String... properties) {
+        List<String> withPort = new ArrayList<>(Arrays.asList(properties));
+        withPort.add("server.port=0");
+        return run(WebApplicationType.SERVLET, withPort.toArray(String[]::new));
+    }
+
+    private static ConfigurableApplicationContext run(WebApplicationType webApplicationType, String... properties) {
+        String database = "benchmark-" + UUID.randomUUID();
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:" + database,
+                "--spring.r2dbc.url=r2dbc:pool:h2:mem:///" + database,
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN"));
+        Arrays.stream(properties).map(property -> "--" + property).forEach(args::add);
+        return new SpringApplicationBuilder(SchoolApplication.class)
+                .web(webApplicationType)
+                .logStartupInfo(false)
+                .run(args.toArray(String[]::new));
+    }
+}
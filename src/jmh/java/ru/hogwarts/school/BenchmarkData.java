@@ -0,0 +1,66 @@
+package ru.hogwarts.school;
+
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Тестовые данные для бенчмарков: четыре факультета и студенты, равномерно распределённые по ним
+ * и по возрастам от 11 до 17
+ */
+public final class BenchmarkData {
+    private static final String[][] FACULTIES = {
+            {"Гриффиндор", "красный"}, {"Слизерин", "зелёный"}, {"Когтевран", "синий"}, {"Пуффендуй", "жёлтый"}
+    };
+
+    private BenchmarkData() {
+    }
+
+    public static List<Faculty> addFaculties(FacultyService facultyService) {
+        return Arrays.stream(FACULTIES)
+                .map(data -> {
+                    Faculty faculty = new Faculty();
+                    faculty.setName(data[0]);
+                    faculty.setColor(data[1]);
+                    return facultyService.addFaculty(faculty);
+                })
+                .toList();
+    }
+
+    /**
+     * Студенты создаются по мере чтения, весь набор в памяти не держится
+     */
+    public static Iterator<Student> students(int count, List<Faculty> faculties) {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public Student next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Student student = new Student();
+                student.setName("Студент " + next);
+                student.setAge(11 + next % 7);
+                student.setFaculty(faculties.get(next % faculties.size()));
+                next++;
+                return student;
+            }
+        };
+    }
+
+    public static void addStudents(StudentService studentService, int count, List<Faculty> faculties) {
+        studentService.importStudents(students(count, faculties));
+    }
+}
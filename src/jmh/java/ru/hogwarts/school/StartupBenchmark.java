@@ -0,0 +1,40 @@
+package ru.hogwarts.school;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время запуска приложения при уже существующей схеме: миграции Flyway (сверка только истории версий)
+ * против ddl-auto=update (Hibernate читает метаданные всех таблиц при каждом старте).
+ * База одна на весь прогон и переживает остановку контекста, поэтому схема создаётся только при первом запуске.
+ * Время запросов с индексами миграций и без них сравнивает RepositoryQueryBenchmark (параметр performanceIndexes)
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    @Param({"flyway", "ddl-auto-update"})
+    public String schemaManagement;
+
+    private String[] properties;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String url = "spring.datasource.url=jdbc:h2:mem:startup-" + schemaManagement + ";DB_CLOSE_DELAY=-1";
+        properties = "flyway".equals(schemaManagement)
+                ? new String[]{url}
+                : new String[]{url, "spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=update"};
+    }
+
+    @Benchmark
+    public void startAndStop() {
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start(properties)) {
+            context.getBean(SchoolApplication.class);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package ru.hogwarts.school.controller;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import ru.hogwarts.school.BenchmarkApplication;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.StudentService;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отдача оригинала аватара GET /avatar/{id}/avatar-from-file (Resource через конвертер Spring MVC)
+ * против прежнего цикла копирования {@code transferTo} ({@link CopyLoopAvatarController}).
+ * Пропускная способность - полные ответы 200 в секунду; выделение памяти на запрос (gc.alloc.rate.norm
+ * профилировщика gc) включает и клиента, но он у обоих вариантов одинаковый
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AvatarDownloadBenchmark {
+    @Param({"resource", "copy-loop"})
+    public String endpoint;
+
+    @Param({"65536", "2097152"})
+    public int fileBytes;
+
+    private ConfigurableApplicationContext context;
+    private Path avatarsDir;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        avatarsDir = Files.createTempDirectory("avatar-download-benchmark");
+        context = BenchmarkApplication.startWeb(
+                "avatar.directory.path=" + avatarsDir,
+                "benchmark.copy-loop-endpoint.enabled=true");
+
+        Student student = new Student();
+        student.setName("Гарри Поттер");
+        student.setAge(11);
+        long studentId = context.getBean(StudentService.class).addStudent(student).getId();
+        context.getBean(AvatarService.class).uploadAvatarStream(studentId, image(fileBytes));
+
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        String path = "copy-loop".equals(endpoint) ? "/benchmark/avatar/" : "/avatar/";
+        request = HttpRequest.newBuilder(URI.create(baseUrl + path + studentId + "/avatar-from-file"))
+                .GET()
+                .build();
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        context.close();
+        FileSystemUtils.deleteRecursively(avatarsDir);
+    }
+
+    @Benchmark
+    public long download() throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Unexpected status " + response.statusCode());
+            }
+            return body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    /**
+     * PNG из случайных пикселей почти не сжимается (~3 байта на пиксель), так что размер файла близок к {@code size}
+     */
+    private static InputStream image(int size) throws IOException {
+        int side = (int) Math.sqrt(size / 3.0);
+        BufferedImage image = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        ImageIO.write(image, "png", out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+}
@@ -0,0 +1,160 @@
+package ru.hogwarts.school.controller;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import ru.hogwarts.school.BenchmarkApplication;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.StudentService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка аватара телом запроса (POST /avatar/{id}/stream) против multipart (POST /avatar/{id}).
+ * Multipart Tomcat сначала сохраняет во временный файл, затем сервис читает его дважды (хеш и запись),
+ * потоковая загрузка пишет байты из сокета один раз.
+ * <p>
+ * Кроме времени загрузки считаются байты, записанные процессом на диск ({@code write_bytes} из /proc/self/io,
+ * только Linux): {@code diskBytes} за итерацию делится на {@code uploads}. Каждая загрузка - новое содержимое,
+ * иначе хранилище узнало бы файл по хешу и ничего не записало. После сигнатуры PNG - случайные байты:
+ * превью для них сразу не строится, и его генерация в фоне не влияет на замер
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AvatarUploadBenchmark {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+    private static final String BOUNDARY = "avatar-upload-benchmark";
+    private static final Path PROC_IO = Path.of("/proc/self/io");
+
+    @Param({"stream", "multipart"})
+    public String upload;
+
+    @Param({"65536", "2097152"})
+    public int fileBytes;
+
+    private ConfigurableApplicationContext context;
+    private Path avatarsDir;
+    private HttpClient client;
+    private URI uri;
+    private byte[] content;
+    private long sequence;
+
+    /**
+     * Счётчики JMH за итерацию: байты на диск и число загрузок
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class DiskWrites {
+        public long diskBytes;
+        public long uploads;
+
+        private long writtenBefore;
+
+        @Setup(Level.Iteration)
+        public void start() throws IOException {
+            diskBytes = 0;
+            uploads = 0;
+            writtenBefore = writeBytes();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() throws IOException {
+            diskBytes = writeBytes() - writtenBefore;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        avatarsDir = Files.createTempDirectory("avatar-upload-benchmark");
+        context = BenchmarkApplication.startWeb(
+                "avatar.directory.path=" + avatarsDir,
+                "logging.level.ru.hogwarts.school.service.AvatarPreviewService=ERROR");
+
+        Student student = new Student();
+        student.setName("Гарри Поттер");
+        student.setAge(11);
+        long studentId = context.getBean(StudentService.class).addStudent(student).getId();
+
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        uri = URI.create(baseUrl + "/avatar/" + studentId + ("stream".equals(upload) ? "/stream" : ""));
+        content = new byte[fileBytes];
+        new Random(42).nextBytes(content);
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        context.close();
+        FileSystemUtils.deleteRecursively(avatarsDir);
+    }
+
+    @Benchmark
+    public int upload(DiskWrites diskWrites) throws IOException, InterruptedException {
+        // Новое содержимое: номер загрузки сразу после сигнатуры
+        ByteBuffer.wrap(content, PNG_SIGNATURE.length, Long.BYTES).putLong(++sequence);
+        HttpRequest request = "stream".equals(upload) ? streamRequest() : multipartRequest();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        diskWrites.uploads++;
+        return response.statusCode();
+    }
+
+    private HttpRequest streamRequest() {
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "image/png")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(content))
+                .build();
+    }
+
+    private HttpRequest multipartRequest() {
+        String head = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"avatarFile\"; filename=\"avatar.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n";
+        String tail = "\r\n--" + BOUNDARY + "--\r\n";
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofString(head, StandardCharsets.US_ASCII),
+                        HttpRequest.BodyPublishers.ofByteArray(content),
+                        HttpRequest.BodyPublishers.ofString(tail, StandardCharsets.US_ASCII)))
+                .build();
+    }
+
+    /**
+     * Байты, которые процесс отправил на запись в хранилище (учитываются в момент изменения страниц кеша,
+     * поэтому попадают и временные файлы, удалённые до сброса на диск). Без /proc/self/io - 0
+     */
+    private static long writeBytes() throws IOException {
+        if (!Files.isReadable(PROC_IO)) {
+            return 0;
+        }
+        List<String> lines = Files.readAllLines(PROC_IO);
+        for (String line : lines) {
+            if (line.startsWith("write_bytes:")) {
+                return Long.parseLong(line.substring("write_bytes:".length()).trim());
+            }
+        }
+        return 0;
+    }
+}
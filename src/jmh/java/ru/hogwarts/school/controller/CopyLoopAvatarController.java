@@ -0,0 +1,51 @@
+package ru.hogwarts.school.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.service.AvatarService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Прежняя отдача оригинала аватара - копирование файла в поток ответа через {@code transferTo}, без Range
+ * и условных запросов. Только для сравнения в {@link AvatarDownloadBenchmark}, включается
+ * {@code benchmark.copy-loop-endpoint.enabled}
+ */
+@RestController
+@ConditionalOnProperty(name = "benchmark.copy-loop-endpoint.enabled", havingValue = "true")
+public class CopyLoopAvatarController {
+    private final AvatarService avatarService;
+
+    public CopyLoopAvatarController(AvatarService avatarService) {
+        this.avatarService = avatarService;
+    }
+
+    @GetMapping("/benchmark/avatar/{id}/avatar-from-file")
+    public void getOriginalAvatar(@PathVariable Long id, HttpServletResponse response) throws IOException {
+        try {
+            Avatar avatar = avatarService.getAvatarFromDisk(id);
+            Path path = Path.of(avatar.getFilePath());
+
+            try (InputStream is = Files.newInputStream(path);
+                 OutputStream os = response.getOutputStream()) {
+
+                response.setStatus(200);
+                response.setContentType(avatar.getMediaType());
+                response.setContentLength((int) avatar.getFileSize());
+
+                is.transferTo(os);
+            }
+        } catch (IOException | RuntimeException e) {
+            response.setStatus(404);
+            response.getWriter().write("Avatar not found: " + e.getMessage());
+        }
+    }
+}
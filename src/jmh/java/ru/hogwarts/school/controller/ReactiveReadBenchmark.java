@@ -0,0 +1,95 @@
+package ru.hogwarts.school.controller;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.BenchmarkApplication;
+import ru.hogwarts.school.BenchmarkData;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одни и те же чтения студентов через сервлетный эндпоинт (JPA, JSON-массив) и реактивный (R2DBC, NDJSON)
+ * при {@code connections} одновременных запросах. Замеряется время волны запросов целиком.
+ * Оба варианта работают на пуле потоков Tomcat по умолчанию и с одинаковым числом соединений к БД
+ * (по 10 у Hikari и r2dbc-pool), поэтому разница - это то, что реактивный запрос не держит поток Tomcat,
+ * пока ждёт соединение и строки из БД
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReactiveReadBenchmark {
+    private static final int STUDENTS = 100_000;
+
+    @Param({"servlet", "reactive"})
+    public String stack;
+
+    @Param({"50", "500", "2000"})
+    public int connections;
+
+    // Поиск по имени не сравнивается: на H2 сервлетный эндпоинт ищет по индексу в памяти, а не в БД
+    @Param({"/age/15", "/age-range?min=12&max=13"})
+    public String query;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private List<HttpRequest> requests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.startWeb();
+        BenchmarkData.addStudents(context.getBean(StudentService.class), STUDENTS,
+                BenchmarkData.addFaculties(context.getBean(FacultyService.class)));
+
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        String path = ("reactive".equals(stack) ? "/reactive/students" : "/students") + query;
+        String accept = "reactive".equals(stack) ? "application/x-ndjson" : "application/json";
+        requests = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            requests.add(HttpRequest.newBuilder(URI.create(baseUrl + path)).header("Accept", accept).GET().build());
+        }
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        clientExecutor.close();
+        context.close();
+    }
+
+    @Benchmark
+    public long wave() {
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>(connections);
+        for (HttpRequest request : requests) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        long bytes = 0;
+        for (CompletableFuture<HttpResponse<byte[]>> response : responses) {
+            HttpResponse<byte[]> result = response.join();
+            if (result.statusCode() != 200) {
+                throw new IllegalStateException("Unexpected status " + result.statusCode() + " for " + result.uri());
+            }
+            bytes += result.body().length;
+        }
+        return bytes;
+    }
+}
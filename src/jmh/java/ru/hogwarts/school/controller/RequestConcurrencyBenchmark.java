@@ -0,0 +1,128 @@
+package ru.hogwarts.school.controller;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import ru.hogwarts.school.BenchmarkApplication;
+import ru.hogwarts.school.BenchmarkData;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный тест: волна из {@code connections} одновременных запросов оригинала аватара
+ * (запрос к БД и чтение файла с диска) на пуле платформенных потоков Tomcat (200 по умолчанию)
+ * и на виртуальных потоках. Время волны - сколько ждёт самый медленный клиент; на пуле оно растёт
+ * ступенями, как только одновременных соединений становится больше, чем потоков.
+ * <p>
+ * Клиент сам работает на виртуальных потоках и держит по соединению HTTP/1.1 на каждый одновременный запрос,
+ * чтобы не быть узким местом. Приложение и клиент делят одну машину, поэтому сравнивать имеет смысл
+ * режимы между собой, а не абсолютные значения.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestConcurrencyBenchmark {
+    private static final int STUDENTS = 1000;
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    @Param({"50", "500", "2000"})
+    public int connections;
+
+    private ConfigurableApplicationContext context;
+    private Path avatarsDir;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private List<HttpRequest> requests;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        avatarsDir = Files.createTempDirectory("avatar-concurrency-benchmark");
+        context = BenchmarkApplication.startWeb(
+                "spring.threads.virtual.enabled=" + virtualThreads,
+                "avatar.directory.path=" + avatarsDir,
+                // Соединений к БД хватает на все потоки пула, чтобы сравнивались потоки, а не пул соединений
+                "spring.datasource.hikari.maximum-pool-size=200");
+
+        StudentService studentService = context.getBean(StudentService.class);
+        AvatarService avatarService = context.getBean(AvatarService.class);
+        List<Student> newStudents = new ArrayList<>(STUDENTS);
+        BenchmarkData.students(STUDENTS, BenchmarkData.addFaculties(context.getBean(FacultyService.class)))
+                .forEachRemaining(newStudents::add);
+        List<Student> students = studentService.addStudents(newStudents);
+        byte[] image = image();
+        for (Student student : students) {
+            avatarService.uploadAvatarStream(student.getId(), new ByteArrayInputStream(image));
+        }
+
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        requests = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            long studentId = students.get(i % students.size()).getId();
+            requests.add(HttpRequest.newBuilder(URI.create(baseUrl + "/avatar/" + studentId + "/avatar-from-file"))
+                    .GET()
+                    .build());
+        }
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        clientExecutor.close();
+        context.close();
+        FileSystemUtils.deleteRecursively(avatarsDir);
+    }
+
+    @Benchmark
+    public long wave() {
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>(connections);
+        for (HttpRequest request : requests) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        long bytes = 0;
+        for (CompletableFuture<HttpResponse<byte[]>> response : responses) {
+            HttpResponse<byte[]> result = response.join();
+            if (result.statusCode() != 200) {
+                throw new IllegalStateException("Unexpected status " + result.statusCode() + " for " + result.uri());
+            }
+            bytes += result.body().length;
+        }
+        return bytes;
+    }
+
+    private static byte[] image() throws IOException {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            ImageIO.write(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), "png", out);
+            return out.toByteArray();
+        }
+    }
+}
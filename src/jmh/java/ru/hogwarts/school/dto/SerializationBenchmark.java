@@ -0,0 +1,72 @@
+package ru.hogwarts.school.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.hogwarts.school.model.Student;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация DTO-записей в JSON и разбор тела запроса тем же ObjectMapper, что настраивает Spring
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+    @Param({"10", "1000"})
+    public int listSize;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private StudentWithFaculty studentWithFaculty;
+    private FacultyWithStudents facultyWithStudents;
+    private List<StudentWithoutFaculty> students;
+    private KeysetPage<StudentWithoutFaculty> page;
+    private byte[] studentJson;
+
+    @Setup
+    public void setUp() {
+        FacultyWithoutStudents faculty = new FacultyWithoutStudents(1, "Гриффиндор", "красный");
+        studentWithFaculty = new StudentWithFaculty(1, "Гарри Поттер", 11, faculty);
+        students = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            students.add(new StudentWithoutFaculty(i + 1, "Студент " + i));
+        }
+        facultyWithStudents = new FacultyWithStudents(1, "Гриффиндор", "красный", students);
+        page = new KeysetPage<>(students, (long) listSize);
+        studentJson = "{\"name\":\"Гарри Поттер\",\"age\":11,\"faculty\":{\"id\":1}}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeStudentWithFaculty() throws IOException {
+        return objectMapper.writeValueAsBytes(studentWithFaculty);
+    }
+
+    @Benchmark
+    public byte[] writeFacultyWithStudents() throws IOException {
+        return objectMapper.writeValueAsBytes(facultyWithStudents);
+    }
+
+    @Benchmark
+    public byte[] writeStudentList() throws IOException {
+        return objectMapper.writeValueAsBytes(students);
+    }
+
+    @Benchmark
+    public byte[] writeKeysetPage() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public Student readStudent() throws IOException {
+        return objectMapper.readValue(studentJson, Student.class);
+    }
+}
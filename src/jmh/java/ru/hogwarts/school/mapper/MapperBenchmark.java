@@ -0,0 +1,72 @@
+package ru.hogwarts.school.mapper;
+
+import org.openjdk.jmh.annotations.*;
+import ru.hogwarts.school.dto.FacultyWithStudents;
+import ru.hogwarts.school.dto.FacultyWithoutStudents;
+import ru.hogwarts.school.dto.StudentWithFaculty;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование сущностей в DTO мапперами
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+    @Param({"10", "1000"})
+    public int studentsPerFaculty;
+
+    private final StudentMapper studentMapper = new StudentMapper();
+    private final FacultyMapper facultyMapper = new FacultyMapper(studentMapper);
+
+    private Faculty faculty;
+    private Student student;
+
+    @Setup
+    public void setUp() {
+        faculty = new Faculty();
+        faculty.setId(1L);
+        faculty.setName("Гриффиндор");
+        faculty.setColor("красный");
+        List<Student> students = new ArrayList<>(studentsPerFaculty);
+        for (int i = 0; i < studentsPerFaculty; i++) {
+            Student s = new Student();
+            s.setId((long) i + 1);
+            s.setName("Студент " + i);
+            s.setAge(11 + i % 7);
+            s.setFaculty(faculty);
+            students.add(s);
+        }
+        faculty.setStudents(students);
+        student = students.get(0);
+    }
+
+    @Benchmark
+    public StudentWithFaculty studentWithFaculty() {
+        return studentMapper.toStudentWithFaculty(student);
+    }
+
+    @Benchmark
+    public StudentWithoutFaculty studentWithoutFaculty() {
+        return studentMapper.toStudentWithoutFaculty(student);
+    }
+
+    @Benchmark
+    public FacultyWithoutStudents facultyWithoutStudents() {
+        return facultyMapper.toFacultyWithoutStudents(faculty);
+    }
+
+    @Benchmark
+    public FacultyWithStudents facultyWithStudents() {
+        return facultyMapper.toFacultyWithStudents(faculty);
+    }
+}
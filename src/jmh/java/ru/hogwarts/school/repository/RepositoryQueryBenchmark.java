@@ -0,0 +1,178 @@
+package ru.hogwarts.school.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.TypedQuery;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.BenchmarkApplication;
+import ru.hogwarts.school.BenchmarkData;
+import ru.hogwarts.school.dto.FacultyStudentStats;
+import ru.hogwarts.school.dto.FacultyWithoutStudents;
+import ru.hogwarts.school.dto.StudentWithFaculty;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+import ru.hogwarts.school.mapper.StudentMapper;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Запросы репозиториев к встроенной H2 со схемой из миграций (те же индексы, что и на PostgreSQL,
+ * кроме триграммного). Абсолютные числа H2 не переносятся на PostgreSQL, но регрессии планов
+ * (например, пропавший индекс) видны и здесь.
+ * <p>
+ * Методы {@code *Entities} - прежний путь до DTO-проекций: загрузка сущностей в persistence context
+ * и преобразование маппером. Сравнивать с ними проекции по времени и по gc.alloc.rate.norm.
+ * <p>
+ * {@code performanceIndexes=false} - та же схема без индексов студентов и факультетов из миграции V2,
+ * как до перехода на Flyway. Внешний ключ student.faculty_id H2 индексирует сам, поэтому
+ * на byFacultyId разница видна только на PostgreSQL
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryQueryBenchmark {
+    // Индексы запросов из V2__performance_indexes.sql
+    private static final List<String> PERFORMANCE_INDEXES = List.of(
+            "idx_student_age", "idx_student_faculty_id", "idx_faculty_name_normalized", "idx_faculty_color_normalized");
+
+    @Param({"10000", "100000"})
+    public int students;
+
+    @Param({"true", "false"})
+    public boolean performanceIndexes;
+
+    private ConfigurableApplicationContext context;
+    private StudentRepository studentRepository;
+    private FacultyRepository facultyRepository;
+    private StudentMapper studentMapper;
+    private EntityManager entityManager;
+    private TransactionTemplate readOnlyTransaction;
+    private long facultyId;
+    private long middleStudentId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("student.age-index.enabled=false");
+        if (!performanceIndexes) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            PERFORMANCE_INDEXES.forEach(index -> jdbcTemplate.execute("DROP INDEX " + index));
+        }
+        studentRepository = context.getBean(StudentRepository.class);
+        facultyRepository = context.getBean(FacultyRepository.class);
+        studentMapper = context.getBean(StudentMapper.class);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(
+                context.getBean(EntityManagerFactory.class));
+        // Как у методов Spring Data репозитория: запрос в read-only транзакции
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+        List<Faculty> faculties = BenchmarkData.addFaculties(context.getBean(FacultyService.class));
+        BenchmarkData.addStudents(context.getBean(StudentService.class), students, faculties);
+        facultyId = faculties.get(0).getId();
+        List<StudentWithoutFaculty> last = studentRepository.findLast(Limit.of(students / 2));
+        middleStudentId = last.get(last.size() - 1).id();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<StudentWithFaculty> studentWithFacultyById() {
+        return studentRepository.findStudentWithFacultyById(middleStudentId);
+    }
+
+    @Benchmark
+    public Collection<StudentWithoutFaculty> byAge() {
+        return studentRepository.findByAge(15);
+    }
+
+    @Benchmark
+    public Collection<StudentWithoutFaculty> byAgeEntities() {
+        return loadEntities("select s from Student s where s.age = :age", query -> query.setParameter("age", 15));
+    }
+
+    @Benchmark
+    public Collection<StudentWithoutFaculty> byAgeBetween() {
+        return studentRepository.findByAgeBetween(12, 13);
+    }
+
+    @Benchmark
+    public Collection<StudentWithoutFaculty> byAgeBetweenEntities() {
+        return loadEntities("select s from Student s where s.age between :minAge and :maxAge",
+                query -> query.setParameter("minAge", 12).setParameter("maxAge", 13));
+    }
+
+    @Benchmark
+    public List<StudentWithoutFaculty> byFacultyId() {
+        return studentRepository.findByFacultyId(facultyId);
+    }
+
+    @Benchmark
+    public List<StudentWithoutFaculty> byFacultyIdEntities() {
+        return loadEntities("select s from Student s where s.faculty.id = :facultyId",
+                query -> query.setParameter("facultyId", facultyId));
+    }
+
+    @Benchmark
+    public List<StudentWithoutFaculty> keysetPage() {
+        return studentRepository.findPageAfter(middleStudentId, Limit.of(50));
+    }
+
+    @Benchmark
+    public List<StudentWithoutFaculty> lastStudents() {
+        return studentRepository.findLast(Limit.of(20));
+    }
+
+    @Benchmark
+    public long count() {
+        return studentRepository.count();
+    }
+
+    @Benchmark
+    public Double averageAge() {
+        return studentRepository.findAverageAge();
+    }
+
+    @Benchmark
+    public List<FacultyStudentStats> facultyStats() {
+        return studentRepository.findFacultyStats();
+    }
+
+    @Benchmark
+    public Collection<FacultyWithoutStudents> facultyByColor() {
+        return facultyRepository.findByColorNormalized(Faculty.normalize("Зелёный"));
+    }
+
+    @Benchmark
+    public List<Faculty> facultyByNameOrColor() {
+        String key = Faculty.normalize("Когтевран");
+        return facultyRepository.findByNameNormalizedOrColorNormalized(key, key);
+    }
+
+    private List<StudentWithoutFaculty> loadEntities(String jpql, Consumer<TypedQuery<Student>> parameters) {
+        return readOnlyTransaction.execute(tx -> {
+            TypedQuery<Student> query = entityManager.createQuery(jpql, Student.class);
+            parameters.accept(query);
+            return query.getResultList().stream()
+                    .map(studentMapper::toStudentWithoutFaculty)
+                    .toList();
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import ru.hogwarts.school.model.AvatarRendition;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генерация набора превью (декодирование с прореживанием, масштабирование, кодирование) для файла на диске.
+ * Память на одну загрузку - gc.alloc.rate.norm профилировщика gc (включён в профиле benchmark).
+ * {@code fullDecode} - декодирование оригинала целиком, как до прореживания: с ним сравнивается выделение памяти
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AvatarPreviewBenchmark {
+    @Param({"png", "jpg"})
+    public String format;
+
+    @Param({"640x480", "3000x2000"})
+    public String size;
+
+    // Сервис без зависимостей: для генерации превью БД и пул не нужны
+    private final AvatarPreviewService service =
+            new AvatarPreviewService(null, null, null, null, new SimpleMeterRegistry(), new int[]{64, 128, 256, 512}, 128, 64);
+
+    private Path directory;
+    private Path image;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+        // Градиент, а не однотонная заливка: кодекам есть что сжимать
+        BufferedImage picture = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = picture.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.RED, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+
+        directory = Files.createTempDirectory("avatar-preview-benchmark");
+        image = directory.resolve("avatar." + format);
+        ImageIO.write(picture, format, image.toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(image);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public List<AvatarRendition> generateRenditions() throws IOException {
+        return service.generateRenditions(image);
+    }
+
+    @Benchmark
+    public BufferedImage fullDecode() throws IOException {
+        return ImageIO.read(image.toFile());
+    }
+}
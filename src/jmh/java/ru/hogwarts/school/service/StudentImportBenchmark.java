@@ -0,0 +1,60 @@
+package ru.hogwarts.school.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.BenchmarkApplication;
+import ru.hogwarts.school.BenchmarkData;
+import ru.hogwarts.school.dto.StudentImportResult;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Потоковый импорт 100 000 студентов ({@link StudentService#importStudents}). Результат - строк в секунду.
+ * Параметр batchSize сравнивает пакетную вставку (hibernate.jdbc.batch_size=50) с построчной
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(StudentImportBenchmark.ROWS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StudentImportBenchmark {
+    static final int ROWS = 100_000;
+
+    @Param({"50", "1"})
+    public int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private StudentService studentService;
+    private StudentRepository studentRepository;
+    private List<Faculty> faculties;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(
+                "spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                "student.age-index.enabled=false");
+        studentService = context.getBean(StudentService.class);
+        studentRepository = context.getBean(StudentRepository.class);
+        faculties = BenchmarkData.addFaculties(context.getBean(FacultyService.class));
+    }
+
+    @Setup(Level.Invocation)
+    public void clearStudents() {
+        studentRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public StudentImportResult importStudents() {
+        return studentService.importStudents(BenchmarkData.students(ROWS, faculties));
+    }
+}
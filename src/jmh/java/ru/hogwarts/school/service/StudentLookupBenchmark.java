@@ -0,0 +1,84 @@
+package ru.hogwarts.school.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.BenchmarkApplication;
+import ru.hogwarts.school.BenchmarkData;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтения StudentService, у которых есть путь через индекс в памяти: фильтры по возрасту и агрегаты
+ * с индексом по возрасту и без него (запросы к H2). Поиск по имени идёт через n-граммный индекс
+ * ({@code student.name-index.enabled}), на H2 без него остаётся только просмотр таблицы.
+ * Режим SampleTime даёт перцентили: цель для поиска по имени - p99 меньше 10 ms на миллионе студентов
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// N-граммный индекс имён на миллион студентов не помещается в куче по умолчанию
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StudentLookupBenchmark {
+    @Param({"100000", "1000000"})
+    public int students;
+
+    @Param({"false", "true"})
+    public boolean ageIndex;
+
+    private ConfigurableApplicationContext context;
+    private StudentService studentService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(
+                "student.age-index.enabled=" + ageIndex,
+                "student.name-index.enabled=true");
+        studentService = context.getBean(StudentService.class);
+        BenchmarkData.addStudents(studentService, students,
+                BenchmarkData.addFaculties(context.getBean(FacultyService.class)));
+        // Индексы в памяти строятся при первом обращении - не в замеряемой части
+        studentService.getStudentCountByAge();
+        studentService.searchByName("студент", 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Collection<StudentWithoutFaculty> byAge() {
+        return studentService.getStudentByAge(15);
+    }
+
+    @Benchmark
+    public Collection<StudentWithoutFaculty> byAgeBetween() {
+        return studentService.getStudentByAgeBetween(12, 13);
+    }
+
+    @Benchmark
+    public List<AgeCount> countByAge() {
+        return studentService.getStudentCountByAge();
+    }
+
+    @Benchmark
+    public double averageAge() {
+        return studentService.getAverageAge();
+    }
+
+    @Benchmark
+    public List<StudentWithoutFaculty> searchByNamePrefix() {
+        return studentService.searchByName("студент 4242", 20);
+    }
+
+    @Benchmark
+    public List<StudentWithoutFaculty> searchByShortSubstring() {
+        return studentService.searchByName("99", 20);
+    }
+}
@@ -3,9 +3,14 @@ package ru.hogwarts.school;
 import io.swagger.v3.oas.annotations.info.Info;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 
-@SpringBootApplication
+// Бин ConnectionFactory из автоконфигурации R2DBC отключил бы DataSource, на котором работают JPA и Flyway,
+// а второй менеджер транзакций сделал бы @Transactional неоднозначным. Реактивное подключение - в ReactiveDataConfig
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
 @OpenAPIDefinition(
         info = @Info(
                 title = "Hogwarts School API",
@@ -13,6 +18,7 @@ import io.swagger.v3.oas.annotations.OpenAPIDefinition;
                 description = "API for managing students and faculties"
         )
 )
+@EnableScheduling
 
 public class SchoolApplication {
 
@@ -0,0 +1,61 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AvatarExecutorConfig {
+
+    /**
+     * Ограниченный пул для генерации превью. Когда очередь заполнена, задачу выполняет
+     * вызывающий поток (CallerRunsPolicy) - это и есть обратное давление при всплеске загрузок.
+     * Задача пишет результат в собственной транзакции, поэтому её можно выполнить и в afterCommit потока запроса.
+     * Остаётся на платформенных потоках и при spring.threads.virtual.enabled: работа упирается в CPU,
+     * а ImageIO внутри синхронизируется на мониторах и закрепляла бы виртуальные потоки.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor avatarPreviewExecutor(
+            @Value("${avatar.preview.executor.pool-size:2}") int poolSize,
+            @Value("${avatar.preview.executor.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("avatar-preview-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Пул массового импорта: хеширование и запись файлов на диск. Очередь короткая, чтобы
+     * в памяти одновременно было не больше нескольких прочитанных из архива файлов.
+     * С виртуальными потоками каждая запись идёт в своём потоке, а {@code setConcurrencyLimit}
+     * так же тормозит чтение архива, как короткая очередь пула
+     */
+    @Bean
+    public AsyncTaskExecutor avatarImportExecutor(
+            @Value("${avatar.import.executor.pool-size:4}") int poolSize,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("avatar-import-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(poolSize * 2);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(poolSize);
+        executor.setThreadNamePrefix("avatar-import-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
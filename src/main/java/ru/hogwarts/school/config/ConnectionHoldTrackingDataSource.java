@@ -0,0 +1,127 @@
+package ru.hogwarts.school.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Замеряет, сколько каждое соединение из пула было занято, и относит время к методу сервиса, который его взял:
+ * ближайшему к запросу соединения кадру стека из пакета {@code ownerPackage}. Метод определяется при выдаче
+ * соединения, а не при каждом запросе, поэтому обход стека - один на транзакцию.
+ * <p>
+ * Метрика {@value #METRIC} с тегом {@code method}; если соединение удерживалось дольше {@code warnThreshold},
+ * в лог пишется предупреждение с тем же методом. Соединения, которые так и не вернули в пул, ловит
+ * leak detection Hikari: в его отчёте стек момента выдачи, в котором тоже виден метод
+ */
+public class ConnectionHoldTrackingDataSource extends DelegatingDataSource {
+    static final String METRIC = "db.connection.hold";
+    static final String UNKNOWN_OWNER = "other";
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionHoldTrackingDataSource.class);
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private final Supplier<MeterRegistry> meterRegistry;
+    private final String ownerPackage;
+    private final long warnThresholdNanos;
+
+    public ConnectionHoldTrackingDataSource(DataSource target, Supplier<MeterRegistry> meterRegistry,
+                                            String ownerPackage, Duration warnThreshold) {
+        super(target);
+        this.meterRegistry = meterRegistry;
+        this.ownerPackage = ownerPackage.endsWith(".") ? ownerPackage : ownerPackage + ".";
+        this.warnThresholdNanos = warnThreshold.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return track(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return track(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection track(Connection connection) {
+        String owner = findOwner();
+        long checkedOutAt = System.nanoTime();
+        boolean[] closed = {false};
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "Tracked connection of " + owner + ": " + connection;
+                    case "close" -> {
+                        try {
+                            yield invoke(connection, method, args);
+                        } finally {
+                            // Повторный close() соединение в пул уже не возвращает
+                            if (!closed[0]) {
+                                closed[0] = true;
+                                record(owner, System.nanoTime() - checkedOutAt);
+                            }
+                        }
+                    }
+                    default -> invoke(connection, method, args);
+                });
+    }
+
+    private static Object invoke(Connection connection, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private void record(String owner, long heldNanos) {
+        Timer.builder(METRIC)
+                .description("Время, на которое метод сервиса занял соединение из пула")
+                .tag("method", owner)
+                .register(meterRegistry.get())
+                .record(heldNanos, TimeUnit.NANOSECONDS);
+        if (heldNanos > warnThresholdNanos) {
+            logger.warn("Connection was held for {} ms by {}", TimeUnit.NANOSECONDS.toMillis(heldNanos), owner);
+        }
+    }
+
+    /**
+     * Класс и метод в виде {@code AvatarService.uploadAvatar}. Прокси Spring ({@code AvatarService$$SpringCGLIB$$0})
+     * берёт соединение в начале транзакции до вызова самого метода - у прокси метод называется так же.
+     * Для лямбды ({@code lambda$attachContent$0}) берётся метод, в котором она объявлена
+     */
+    String findOwner() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(ownerPackage)
+                        && frame.getDeclaringClass() != ConnectionHoldTrackingDataSource.class)
+                .findFirst()
+                .map(frame -> simpleClassName(frame.getClassName()) + "." + methodName(frame.getMethodName()))
+                .orElse(UNKNOWN_OWNER));
+    }
+
+    private static String simpleClassName(String className) {
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        int generated = simpleName.indexOf("$$");
+        return generated >= 0 ? simpleName.substring(0, generated) : simpleName;
+    }
+
+    private static String methodName(String methodName) {
+        if (methodName.startsWith("lambda$")) {
+            int end = methodName.indexOf('$', "lambda$".length());
+            return end > 0 ? methodName.substring("lambda$".length(), end) : methodName;
+        }
+        return methodName;
+    }
+}
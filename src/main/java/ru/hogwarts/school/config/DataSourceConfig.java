@@ -0,0 +1,79 @@
+package ru.hogwarts.school.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+@Configuration
+public class DataSourceConfig {
+    private static final String SERVICE_PACKAGE = "ru.hogwarts.school.service";
+
+    /**
+     * Оборачивает пул Hikari, созданный Spring Boot:
+     * <ul>
+     *     <li>LazyConnectionDataSourceProxy берёт соединение из пула не в начале транзакции, а при первом SQL,
+     *     поэтому транзакция, которая до БД не дошла, пул не трогает;</li>
+     *     <li>read-only транзакции при заданном {@code db.read-only.url} идут в отдельный пул к реплике
+     *     с теми же настройками, иначе - в основной пул с read-only соединением;</li>
+     *     <li>{@link ConnectionHoldTrackingDataSource} замеряет время удержания соединения по методам сервисов.</li>
+     * </ul>
+     */
+    @Bean
+    public static BeanPostProcessor connectionHoldTrackingPostProcessor(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${db.connection.hold-warn-threshold:1s}") Duration warnThreshold,
+            @Value("${db.read-only.url:}") String readOnlyUrl) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource primary) {
+                    HikariDataSource readOnly = readOnlyUrl.isBlank() ? null : readOnlyPool(primary, readOnlyUrl);
+                    return new TrackedLazyDataSource(primary, readOnly, meterRegistry::getObject, warnThreshold);
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static HikariDataSource readOnlyPool(HikariDataSource primary, String url) {
+        HikariDataSource pool = new HikariDataSource();
+        primary.copyStateTo(pool);
+        pool.setJdbcUrl(url);
+        pool.setPoolName(primary.getPoolName() + "-read-only");
+        pool.setReadOnly(true);
+        return pool;
+    }
+
+    /**
+     * close() нужен, чтобы контекст при остановке закрыл пулы: метод закрытия ищется у обёртки, а не у Hikari
+     */
+    private static class TrackedLazyDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+        private final List<HikariDataSource> pools = new ArrayList<>();
+
+        TrackedLazyDataSource(HikariDataSource primary, HikariDataSource readOnly,
+                              Supplier<MeterRegistry> meterRegistry, Duration warnThreshold) {
+            super(new ConnectionHoldTrackingDataSource(primary, meterRegistry, SERVICE_PACKAGE, warnThreshold));
+            pools.add(primary);
+            if (readOnly != null) {
+                setReadOnlyDataSource(
+                        new ConnectionHoldTrackingDataSource(readOnly, meterRegistry, SERVICE_PACKAGE, warnThreshold));
+                pools.add(readOnly);
+            }
+        }
+
+        @Override
+        public void close() {
+            pools.forEach(HikariDataSource::close);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.hogwarts.school.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.hogwarts.school.controller.AvatarTrafficMetricsFilter;
+
+/**
+ * Метрики, которых нет среди автоматических. Время каждого эндпоинта (http.server.requests) и каждого метода
+ * Spring Data репозиториев (spring.data.repository.invocations) Spring Boot снимает сам,
+ * гистограммы для них включаются в application.properties
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public FilterRegistrationBean<AvatarTrafficMetricsFilter> avatarTrafficMetricsFilter(MeterRegistry registry) {
+        FilterRegistrationBean<AvatarTrafficMetricsFilter> registration =
+                new FilterRegistrationBean<>(new AvatarTrafficMetricsFilter(registry));
+        registration.addUrlPatterns("/avatar/*");
+        return registration;
+    }
+}
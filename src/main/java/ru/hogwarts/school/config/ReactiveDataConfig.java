@@ -0,0 +1,49 @@
+package ru.hogwarts.school.config;
+
+import io.r2dbc.spi.Closeable;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+
+/**
+ * Неблокирующее подключение к той же БД для реактивных чтений. Пул R2DBC ({@code r2dbc:pool:...} в
+ * {@code spring.r2dbc.url}) не регистрируется бином: по бину ConnectionFactory Spring Boot решил бы,
+ * что приложение целиком реактивное, и не создал бы DataSource. Наружу отдаётся только {@link DatabaseClient},
+ * а пул закрывается вместе с контекстом
+ */
+@Configuration
+public class ReactiveDataConfig implements DisposableBean {
+    private final ConnectionFactory connectionFactory;
+
+    public ReactiveDataConfig(@Value("${spring.r2dbc.url}") String url,
+                              @Value("${spring.r2dbc.username:}") String username,
+                              @Value("${spring.r2dbc.password:}") String password) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        if (StringUtils.hasText(username)) {
+            options.option(ConnectionFactoryOptions.USER, username);
+        }
+        if (StringUtils.hasText(password)) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        this.connectionFactory = ConnectionFactories.get(options.build());
+    }
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient() {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionFactory instanceof Closeable closeable) {
+            Mono.from(closeable.close()).block();
+        }
+    }
+}
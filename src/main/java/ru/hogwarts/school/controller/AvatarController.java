@@ -5,29 +5,42 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.AvatarImportResult;
+import ru.hogwarts.school.dto.AvatarPreview;
+import ru.hogwarts.school.dto.PreviewCacheStats;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.PreviewStatus;
+import ru.hogwarts.school.service.AvatarImportService;
 import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarTooLargeException;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 
 @RestController
 @RequestMapping("/avatar")
 @Tag(name = "Avatar Controller", description = "Управление аватарами студентов")
 public class AvatarController {
+    private static final int PREVIEW_RETRY_AFTER_SECONDS = 1;
+
     private final AvatarService avatarService;
+    private final AvatarImportService avatarImportService;
 
-    public AvatarController(AvatarService avatarService) {
+    public AvatarController(AvatarService avatarService, AvatarImportService avatarImportService) {
         this.avatarService = avatarService;
+        this.avatarImportService = avatarImportService;
     }
 
     @Operation(summary = "Загрузить аватар для студента")
@@ -52,55 +65,125 @@ public class AvatarController {
         }
     }
 
-    @Operation(summary = "Получить превью аватара из БД")
+    @Operation(summary = "Загрузить аватар телом запроса",
+            description = "Файл передаётся как есть (image/* или application/octet-stream), без multipart; "
+                    + "формат определяется по сигнатуре содержимого")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Аватар успешно загружен"),
+            @ApiResponse(responseCode = "404", description = "Студент не найден"),
+            @ApiResponse(responseCode = "413", description = "Файл слишком большой"),
+            @ApiResponse(responseCode = "415", description = "Содержимое не является изображением поддерживаемого формата"),
+            @ApiResponse(responseCode = "500", description = "Ошибка при загрузке файла")
+    })
+    @PostMapping(value = "/{studentId}/stream", consumes = {"image/*", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<String> uploadAvatarStream(
+            @Parameter(description = "ID студента") @PathVariable Long studentId,
+            InputStream body) {
+        try {
+            avatarService.uploadAvatarStream(studentId, body);
+            return ResponseEntity.ok("Avatar uploaded successfully for student ID: " + studentId);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to upload avatar: " + e.getMessage());
+        } catch (AvatarTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("Avatar is too large: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                    .body("Unsupported avatar: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body("Student not found: " + e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Массовый импорт аватаров из zip-архива",
+            description = "Архив передаётся телом запроса; файлы в нём называются по id студента, например 42.jpg")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Архив обработан, результат по каждому файлу"),
+            @ApiResponse(responseCode = "400", description = "Повреждённый архив: результат по файлам до повреждения "
+                    + "и последним элементом - отметка ARCHIVE_ERROR"),
+            @ApiResponse(responseCode = "500", description = "Ошибка при чтении архива")
+    })
+    @PostMapping(value = "/import", consumes = {"application/zip", "application/x-zip-compressed"})
+    public ResponseEntity<List<AvatarImportResult>> importAvatars(InputStream archive) {
+        try {
+            List<AvatarImportResult> results = avatarImportService.importArchive(archive);
+            boolean corrupted = results.stream()
+                    .anyMatch(result -> result.status() == AvatarImportResult.Status.ARCHIVE_ERROR);
+            return corrupted ? ResponseEntity.badRequest().body(results) : ResponseEntity.ok(results);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @Operation(summary = "Получить превью аватара из БД",
+            description = "Отдаёт превью, ширина которого ближе всего к запрошенной (наименьшее не уже запрошенного)")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Превью успешно получено"),
+            @ApiResponse(responseCode = "202", description = "Превью ещё генерируется, повторите запрос позже"),
             @ApiResponse(responseCode = "404", description = "Аватар не найден")
     })
     @GetMapping(value = "/{id}/preview")
     public ResponseEntity<byte[]> getAvatarPreview(
-            @Parameter(description = "ID студента") @PathVariable Long id) {
+            @Parameter(description = "ID студента") @PathVariable Long id,
+            @Parameter(description = "Желаемая ширина превью в пикселях") @RequestParam(required = false) Integer width) {
         try {
-            byte[] previewData = avatarService.getAvatarDataFromDatabase(id);
-            if (previewData == null || previewData.length == 0) {
+            AvatarPreview preview = avatarService.getAvatarPreview(id, width);
+            if (preview.status() == PreviewStatus.PENDING) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(PREVIEW_RETRY_AFTER_SECONDS))
+                        .build();
+            }
+            if (preview.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
-            Avatar avatar = avatarService.findAvatar(id);
 
             return ResponseEntity.status(HttpStatus.OK)
-                    .header("Content-Type", avatar.getMediaType())
-                    .header("Content-Length", String.valueOf(previewData.length))
-                    .body(previewData);
+                    .header("Content-Type", preview.mediaType())
+                    .header("Content-Length", String.valueOf(preview.data().length))
+                    .body(preview.data());
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
+    @Operation(summary = "Статистика кеша превью")
+    @GetMapping("/preview-cache/stats")
+    public ResponseEntity<PreviewCacheStats> getPreviewCacheStats() {
+        return ResponseEntity.ok(avatarService.getPreviewCacheStats());
+    }
+
     @Operation(summary = "Получить оригинальный аватар с диска")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Оригинальный аватар успешно получено"),
+            @ApiResponse(responseCode = "206", description = "Получена запрошенная часть файла (Range)"),
+            @ApiResponse(responseCode = "304", description = "Аватар не изменился (If-None-Match / If-Modified-Since)"),
             @ApiResponse(responseCode = "404", description = "Аватар не найден")
     })
     @GetMapping(value = "/{id}/avatar-from-file")
-    public void getOriginalAvatar(
-            @Parameter(description = "ID студента") @PathVariable Long id,
-            HttpServletResponse response) throws IOException {
+    public ResponseEntity<Resource> getOriginalAvatar(
+            @Parameter(description = "ID студента") @PathVariable Long id) {
         try {
             Avatar avatar = avatarService.getAvatarFromDisk(id);
             Path path = Path.of(avatar.getFilePath());
+            if (!Files.isRegularFile(path)) {
+                return ResponseEntity.notFound().build();
+            }
 
-            try (InputStream is = Files.newInputStream(path);
-                 OutputStream os = response.getOutputStream()) {
-
-                response.setStatus(200);
-                response.setContentType(avatar.getMediaType());
-                response.setContentLength((int) avatar.getFileSize());
-
-                is.transferTo(os);
+            // Range, If-None-Match и If-Modified-Since обрабатывает Spring MVC:
+            // для Resource он сам отдаёт 206/304 и ставит Accept-Ranges и Content-Length (long, без приведения к int)
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(toMediaType(avatar.getMediaType()));
+            if (avatar.getContentHash() != null) {
+                response.eTag(buildETag(avatar.getContentHash()));
+            }
+            if (avatar.getUpdatedAt() != null) {
+                response.lastModified(avatar.getUpdatedAt());
             }
+            return response.body(new FileSystemResource(path));
         } catch (IOException | RuntimeException e) {
-            response.setStatus(404);
-            response.getWriter().write("Avatar not found: " + e.getMessage());
+            return ResponseEntity.notFound().build();
         }
     }
 
@@ -124,5 +207,23 @@ public class AvatarController {
                     .body("Avatar not found: " + e.getMessage());
         }
     }
-}
 
+    private MediaType toMediaType(String mediaType) {
+        if (mediaType == null || mediaType.isBlank()) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+        try {
+            return MediaType.parseMediaType(mediaType);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    /**
+     * Сильный ETag - SHA-256 содержимого: хеш уже есть в записи аватара, и он меняется ровно тогда,
+     * когда меняются байты оригинала
+     */
+    private String buildETag(String contentHash) {
+        return "\"" + contentHash + "\"";
+    }
+}
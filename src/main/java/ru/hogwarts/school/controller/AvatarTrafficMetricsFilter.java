@@ -0,0 +1,125 @@
+package ru.hogwarts.school.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Считает байты, фактически отданные клиенту при чтении аватаров: превью и оригиналов с диска.
+ * Считается то, что записано в ответ, поэтому Range-запросы и 304 учитываются честно
+ */
+public class AvatarTrafficMetricsFilter extends OncePerRequestFilter {
+    private final Counter previewBytes;
+    private final Counter originalBytes;
+
+    public AvatarTrafficMetricsFilter(MeterRegistry registry) {
+        this.previewBytes = bytesCounter(registry, "preview");
+        this.originalBytes = bytesCounter(registry, "original");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) || counterFor(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        CountingResponse countingResponse = new CountingResponse(response);
+        try {
+            filterChain.doFilter(request, countingResponse);
+        } finally {
+            counterFor(request).increment(countingResponse.bytesWritten());
+        }
+    }
+
+    private Counter counterFor(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        if (uri.endsWith("/preview")) {
+            return previewBytes;
+        }
+        if (uri.endsWith("/avatar-from-file")) {
+            return originalBytes;
+        }
+        return null;
+    }
+
+    private static Counter bytesCounter(MeterRegistry registry, String kind) {
+        return Counter.builder("avatar.bytes.streamed")
+                .description("Байты аватаров, отданные клиентам")
+                .baseUnit(BaseUnits.BYTES)
+                .tag("kind", kind)
+                .register(registry);
+    }
+
+    private static class CountingResponse extends HttpServletResponseWrapper {
+        private CountingOutputStream outputStream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new CountingOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        long bytesWritten() {
+            return outputStream != null ? outputStream.count : 0;
+        }
+    }
+
+    private static class CountingOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+        private long count;
+
+        CountingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
@@ -1,22 +1,25 @@
 package ru.hogwarts.school.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.dto.KeysetPage;
 import ru.hogwarts.school.dto.FacultyWithStudents;
 import ru.hogwarts.school.dto.FacultyWithoutStudents;
 import ru.hogwarts.school.dto.StudentWithoutFaculty;
 import ru.hogwarts.school.mapper.FacultyMapper;
-import ru.hogwarts.school.mapper.StudentMapper;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.service.FacultyService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/faculty")
@@ -24,13 +27,13 @@ import java.util.stream.Collectors;
 public class FacultyController {
     private final FacultyService service;
     private final FacultyMapper facultyMapper;
-    private final StudentMapper studentMapper;
+    private final ObjectMapper objectMapper;
 
 
-    public FacultyController(FacultyService service, FacultyMapper facultyMapper, StudentMapper studentMapper) {
+    public FacultyController(FacultyService service, FacultyMapper facultyMapper, ObjectMapper objectMapper) {
         this.service = service;
         this.facultyMapper = facultyMapper;
-        this.studentMapper = studentMapper;
+        this.objectMapper = objectMapper;
     }
 
     @Operation(summary = "Добавить факультет")
@@ -74,9 +77,33 @@ public class FacultyController {
     @Operation(summary = "Получить все факультеты")
     @GetMapping
     public ResponseEntity<Collection<FacultyWithoutStudents>> getAllFaculties() {
-        return ResponseEntity.ok(service.getAllFaculties().stream()
-                .map(facultyMapper::toFacultyWithoutStudents)
-                .collect(Collectors.toList()));
+        return ResponseEntity.ok(service.getAllFaculties());
+    }
+
+    @Operation(summary = "Получить факультетов постранично",
+            description = "Keyset-пагинация по id: для следующей страницы передайте afterId = nextAfterId из ответа")
+    @GetMapping("/page")
+    public ResponseEntity<KeysetPage<FacultyWithoutStudents>> getFacultiesPage(
+            @Parameter(description = "id, после которого начинается страница") @RequestParam(required = false) Long afterId,
+            @Parameter(description = "размер страницы") @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(service.getFacultiesPage(afterId, size));
+    }
+
+    @Operation(summary = "Выгрузить всех факультетов потоком",
+            description = "NDJSON: по одному JSON-объекту на строку, записи отдаются по мере чтения из БД")
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamFaculties() {
+        StreamingResponseBody body = output -> service.forEachFaculty(faculty -> {
+            try {
+                output.write(objectMapper.writeValueAsBytes(faculty));
+                output.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @Operation(summary = "Фильтр по цвету")
@@ -84,39 +111,33 @@ public class FacultyController {
     public ResponseEntity<Collection<FacultyWithoutStudents>> getFacultyByColor(
             @Parameter(description = "Цвет факультета")
             @PathVariable String color) {
-        Collection<Faculty> filteredFaculties = service.getFacultyByColor(color);
+        Collection<FacultyWithoutStudents> filteredFaculties = service.getFacultyByColor(color);
         if (filteredFaculties.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(filteredFaculties.stream()
-                .map(facultyMapper::toFacultyWithoutStudents)
-                .collect(Collectors.toList()));
+        return ResponseEntity.ok(filteredFaculties);
     }
 
     @Operation(summary = "Поиск факультета по имени или цвету")
     @GetMapping("/search")
     public ResponseEntity<Collection<FacultyWithoutStudents>> getFacultiesByNameOrColor(
             @Parameter(description = "название или цвет факультета") @RequestParam String query) {
-        Collection<Faculty> faculties = service.getFacultiesByNameOrColor(query);
+        Collection<FacultyWithoutStudents> faculties = service.getFacultiesByNameOrColor(query);
         if (faculties.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(faculties.stream()
-                .map(facultyMapper::toFacultyWithoutStudents)
-                .collect(Collectors.toList()));
+        return ResponseEntity.ok(faculties);
     }
 
     @Operation(summary = "Получить студентов факультета")
     @GetMapping("/{id}/students")
     public ResponseEntity<List<StudentWithoutFaculty>> getStudentsByFacultyId(
             @Parameter(description = "ID факультета") @PathVariable Long id) {
-        List<Student> students = service.getStudentsByFacultyId(id);
+        List<StudentWithoutFaculty> students = service.getStudentsByFacultyId(id);
         if (students.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(students.stream()
-                .map(studentMapper::toStudentWithoutFaculty)
-                .collect(Collectors.toList()));
+        return ResponseEntity.ok(students);
     }
 
 }
@@ -0,0 +1,56 @@
+package ru.hogwarts.school.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import ru.hogwarts.school.dto.FacultyWithoutStudents;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+import ru.hogwarts.school.service.ReactiveFacultyService;
+import ru.hogwarts.school.service.ReactiveStudentService;
+
+/**
+ * Реактивные аналоги чтений {@link FacultyController}, ответ - поток NDJSON или SSE
+ */
+@RestController
+@RequestMapping(value = "/reactive/faculty",
+        produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+@Tag(name = "Reactive Faculty Controller", description = "Потоковые чтения факультетов через R2DBC")
+public class ReactiveFacultyController {
+    private final ReactiveFacultyService facultyService;
+    private final ReactiveStudentService studentService;
+
+    public ReactiveFacultyController(ReactiveFacultyService facultyService, ReactiveStudentService studentService) {
+        this.facultyService = facultyService;
+        this.studentService = studentService;
+    }
+
+    @Operation(summary = "Получить все факультеты потоком")
+    @GetMapping
+    public Flux<FacultyWithoutStudents> getAllFaculties() {
+        return facultyService.getAllFaculties();
+    }
+
+    @Operation(summary = "Фильтр по цвету")
+    @GetMapping("/color/{color}")
+    public Flux<FacultyWithoutStudents> getFacultyByColor(
+            @Parameter(description = "Цвет факультета") @PathVariable String color) {
+        return facultyService.getFacultyByColor(color);
+    }
+
+    @Operation(summary = "Поиск факультета по имени или цвету")
+    @GetMapping("/search")
+    public Flux<FacultyWithoutStudents> getFacultiesByNameOrColor(
+            @Parameter(description = "название или цвет факультета") @RequestParam String query) {
+        return facultyService.getFacultiesByNameOrColor(query);
+    }
+
+    @Operation(summary = "Получить студентов факультета потоком")
+    @GetMapping("/{id}/students")
+    public Flux<StudentWithoutFaculty> getStudentsByFacultyId(
+            @Parameter(description = "ID факультета") @PathVariable long id) {
+        return studentService.getStudentsByFacultyId(id);
+    }
+}
@@ -0,0 +1,61 @@
+package ru.hogwarts.school.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+import ru.hogwarts.school.service.ReactiveStudentService;
+
+/**
+ * Реактивные аналоги чтений {@link StudentController}. Ответ - поток NDJSON или SSE (по заголовку Accept):
+ * Spring MVC подписывается на Flux и запрашивает следующий элемент, только когда предыдущий записан в ответ,
+ * а поток Tomcat на время запроса к БД не занят
+ */
+@RestController
+@RequestMapping(value = "/reactive/students",
+        produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+@Tag(name = "Reactive Student Controller", description = "Потоковые чтения студентов через R2DBC")
+public class ReactiveStudentController {
+    private final ReactiveStudentService service;
+
+    public ReactiveStudentController(ReactiveStudentService service) {
+        this.service = service;
+    }
+
+    @Operation(summary = "Получить всех студентов потоком")
+    @GetMapping
+    public Flux<StudentWithoutFaculty> getAllStudents() {
+        return service.getAllStudents();
+    }
+
+    @Operation(summary = "Фильтр по возрасту")
+    @GetMapping("/age/{age}")
+    public Flux<StudentWithoutFaculty> getStudentByAge(@PathVariable int age) {
+        return service.getStudentByAge(age);
+    }
+
+    @Operation(summary = "Фильтр по возрасту в диапазоне")
+    @GetMapping("/age-range")
+    public Flux<StudentWithoutFaculty> getStudentByAgeBetween(
+            @Parameter(description = "минимальный возраст") @RequestParam int min,
+            @Parameter(description = "максимальный возраст") @RequestParam int max) {
+        return service.getStudentByAgeBetween(min, max);
+    }
+
+    @Operation(summary = "Поиск по имени",
+            description = "По подстроке без учёта регистра. Сначала имена, начинающиеся с запроса, затем с совпадением "
+                    + "в начале слова, затем остальные")
+    @GetMapping("/search")
+    public ResponseEntity<Flux<StudentWithoutFaculty>> searchByName(
+            @Parameter(description = "часть имени") @RequestParam String q,
+            @Parameter(description = "максимум результатов") @RequestParam(required = false) Integer limit) {
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(service.searchByName(q, limit));
+    }
+}
@@ -1,21 +1,32 @@
 package ru.hogwarts.school.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.dto.KeysetPage;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.FacultyStudentStats;
 import ru.hogwarts.school.dto.FacultyWithoutStudents;
+import ru.hogwarts.school.dto.StudentImportResult;
 import ru.hogwarts.school.dto.StudentWithFaculty;
 import ru.hogwarts.school.dto.StudentWithoutFaculty;
 import ru.hogwarts.school.mapper.StudentMapper;
-import ru.hogwarts.school.mapper.FacultyMapper;
-import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.service.StudentService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Collection;
-import java.util.stream.Collectors;
+import java.util.List;
 
 
 
@@ -25,13 +36,13 @@ import java.util.stream.Collectors;
 public class StudentController {
     private final StudentService service;
     private final StudentMapper mapper;
-    private final FacultyMapper facultyMapper;
+    private final ObjectMapper objectMapper;
 
 
-    public StudentController(StudentService service, StudentMapper mapper, FacultyMapper facultyMapper) {
+    public StudentController(StudentService service, StudentMapper mapper, ObjectMapper objectMapper) {
         this.service = service;
         this.mapper = mapper;
-        this.facultyMapper = facultyMapper;
+        this.objectMapper = objectMapper;
     }
 
     @Operation(summary = "Добавить студента")
@@ -46,11 +57,11 @@ public class StudentController {
     public ResponseEntity<StudentWithFaculty> getStudent(
             @Parameter(description = "ID студента")
             @PathVariable Long id) {
-        Student student = service.getStudent(id);
+        StudentWithFaculty student = service.getStudentWithFaculty(id);
         if (student == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(mapper.toStudentWithFaculty(student));
+        return ResponseEntity.ok(student);
     }
 
     @Operation(summary = "Обновить данные студента")
@@ -72,24 +83,116 @@ public class StudentController {
         return ResponseEntity.ok().build();
     }
 
+    @Operation(summary = "Добавить студентов списком",
+            description = "Все студенты сохраняются одной транзакцией; если хотя бы одного факультета нет, "
+                    + "ничего не сохраняется")
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<StudentWithFaculty>> addStudents(@RequestBody List<Student> students) {
+        List<Student> addedStudents = service.addStudents(students);
+        if (addedStudents == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(addedStudents.stream()
+                .map(mapper::toStudentWithFaculty)
+                .toList());
+    }
+
+    @Operation(summary = "Импортировать студентов потоком",
+            description = "NDJSON: по одному студенту на строку. Поток читается по мере поступления и сохраняется "
+                    + "порциями, каждая своей транзакцией; при ошибке в данных (в том числе несуществующем факультете) "
+                    + "уже сохранённые порции остаются")
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StudentImportResult> importStudents(InputStream body) throws IOException {
+        try (MappingIterator<Student> students = objectMapper.readerFor(Student.class).readValues(body)) {
+            StudentImportResult result = service.importStudents(students);
+            if (result == null) {
+                return ResponseEntity.badRequest().build();
+            }
+            return ResponseEntity.ok(result);
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (RuntimeException e) {
+            // MappingIterator оборачивает ошибки разбора очередной строки в непроверяемые исключения
+            if (e instanceof RuntimeJsonMappingException || e.getCause() instanceof JsonProcessingException) {
+                return ResponseEntity.badRequest().build();
+            }
+            throw e;
+        }
+    }
+
+    @Operation(summary = "Обновить студентов списком",
+            description = "Одной транзакцией; если хотя бы одного студента или факультета нет, ничего не меняется")
+    @PutMapping("/batch")
+    public ResponseEntity<List<StudentWithFaculty>> updateStudents(@RequestBody List<Student> students) {
+        List<Student> updatedStudents = service.updateStudents(students);
+        if (updatedStudents == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(updatedStudents.stream()
+                .map(mapper::toStudentWithFaculty)
+                .toList());
+    }
+
+    @Operation(summary = "Удалить студентов списком", description = "Тело запроса - массив id")
+    @DeleteMapping("/batch")
+    public ResponseEntity<Void> deleteStudents(@RequestBody List<Long> ids) {
+        service.removeStudents(ids);
+        return ResponseEntity.ok().build();
+    }
+
     @Operation(summary = "Получить всех студентов")
     @GetMapping
     public ResponseEntity<Collection<StudentWithoutFaculty>> getAllStudents() {
-        return ResponseEntity.ok(service.getAllStudents().stream()
-                .map(mapper::toStudentWithoutFaculty)
-                .collect(Collectors.toList()));
+        return ResponseEntity.ok(service.getAllStudents());
+    }
+
+    @Operation(summary = "Получить студентов постранично",
+            description = "Keyset-пагинация по id: для следующей страницы передайте afterId = nextAfterId из ответа")
+    @GetMapping("/page")
+    public ResponseEntity<KeysetPage<StudentWithoutFaculty>> getStudentsPage(
+            @Parameter(description = "id, после которого начинается страница") @RequestParam(required = false) Long afterId,
+            @Parameter(description = "размер страницы") @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(service.getStudentsPage(afterId, size));
+    }
+
+    @Operation(summary = "Выгрузить всех студентов потоком",
+            description = "NDJSON: по одному JSON-объекту на строку, записи отдаются по мере чтения из БД")
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStudents() {
+        StreamingResponseBody body = output -> service.forEachStudent(student -> {
+            try {
+                output.write(objectMapper.writeValueAsBytes(student));
+                output.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @Operation(summary = "Поиск по имени",
+            description = "По подстроке без учёта регистра. Сначала имена, начинающиеся с запроса, затем с совпадением "
+                    + "в начале слова, затем остальные")
+    @GetMapping("/search")
+    public ResponseEntity<List<StudentWithoutFaculty>> searchByName(
+            @Parameter(description = "часть имени") @RequestParam String q,
+            @Parameter(description = "максимум результатов") @RequestParam(required = false) Integer limit) {
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(service.searchByName(q, limit));
     }
 
     @Operation(summary = "Фильтр по возрасту")
     @GetMapping("/age/{age}")
     public ResponseEntity<Collection<StudentWithoutFaculty>> getStudentByAge(@PathVariable int age) {
-        Collection<Student> filteredStudents = service.getStudentByAge(age);
+        Collection<StudentWithoutFaculty> filteredStudents = service.getStudentByAge(age);
         if (filteredStudents.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(filteredStudents.stream()
-                .map(mapper::toStudentWithoutFaculty)
-                .collect(Collectors.toList()));
+        return ResponseEntity.ok(filteredStudents);
 
     }
 
@@ -98,13 +201,42 @@ public class StudentController {
     public ResponseEntity<Collection<StudentWithoutFaculty>> getStudentByAgeBetween(
             @Parameter(description = "минимальный возраст") @RequestParam int min,
             @Parameter(description = "максимальный возраст") @RequestParam int max) {
-        Collection<Student> filteredStudents = service.getStudentByAgeBetween(min, max);
+        Collection<StudentWithoutFaculty> filteredStudents = service.getStudentByAgeBetween(min, max);
         if (filteredStudents.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(filteredStudents.stream()
-                .map(mapper::toStudentWithoutFaculty)
-                .collect(Collectors.toList()));
+        return ResponseEntity.ok(filteredStudents);
+    }
+
+    @Operation(summary = "Количество студентов по возрастам")
+    @GetMapping("/age-counts")
+    public ResponseEntity<List<AgeCount>> getStudentCountByAge() {
+        return ResponseEntity.ok(service.getStudentCountByAge());
+    }
+
+    @Operation(summary = "Количество студентов")
+    @GetMapping("/count")
+    public ResponseEntity<Long> getStudentCount() {
+        return ResponseEntity.ok(service.getStudentCount());
+    }
+
+    @Operation(summary = "Средний возраст студентов")
+    @GetMapping("/average-age")
+    public ResponseEntity<Double> getAverageAge() {
+        return ResponseEntity.ok(service.getAverageAge());
+    }
+
+    @Operation(summary = "Последние добавленные студенты", description = "Сначала самые новые")
+    @GetMapping("/last")
+    public ResponseEntity<List<StudentWithoutFaculty>> getLastStudents(
+            @Parameter(description = "сколько студентов вернуть") @RequestParam(required = false) Integer count) {
+        return ResponseEntity.ok(service.getLastStudents(count));
+    }
+
+    @Operation(summary = "Статистика по факультетам", description = "Количество и средний возраст студентов каждого факультета")
+    @GetMapping("/faculty-stats")
+    public ResponseEntity<List<FacultyStudentStats>> getFacultyStats() {
+        return ResponseEntity.ok(service.getFacultyStats());
     }
 
     @Operation(summary = "получить факультет студента")
@@ -112,11 +244,11 @@ public class StudentController {
     public ResponseEntity<FacultyWithoutStudents> getFacultyByStudentId(
             @Parameter(description = "Id студента") @PathVariable Long id
     ) {
-        Faculty faculty = service.getFacultyByStudentId(id);
+        FacultyWithoutStudents faculty = service.getFacultyByStudentId(id);
         if (faculty == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(facultyMapper.toFacultyWithoutStudents(faculty));
+        return ResponseEntity.ok(faculty);
     }
 
 }
@@ -0,0 +1,32 @@
+package ru.hogwarts.school.dto;
+
+public record AvatarImportResult(
+        String fileName,
+        Long studentId,
+        Status status,
+        String message
+) {
+    public enum Status {
+        IMPORTED,
+        UNCHANGED,
+        FAILED,
+        // Последний элемент отчёта, если архив оказался повреждён: файлы после повреждённого места не прочитаны
+        ARCHIVE_ERROR
+    }
+
+    public static AvatarImportResult imported(String fileName, Long studentId) {
+        return new AvatarImportResult(fileName, studentId, Status.IMPORTED, null);
+    }
+
+    public static AvatarImportResult unchanged(String fileName, Long studentId) {
+        return new AvatarImportResult(fileName, studentId, Status.UNCHANGED, "Avatar content is the same");
+    }
+
+    public static AvatarImportResult failed(String fileName, Long studentId, String message) {
+        return new AvatarImportResult(fileName, studentId, Status.FAILED, message);
+    }
+
+    public static AvatarImportResult archiveError(String fileName, String message) {
+        return new AvatarImportResult(fileName, null, Status.ARCHIVE_ERROR, message);
+    }
+}
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.model.PreviewStatus;
+
+public record AvatarPreview(
+        byte[] data,
+        String mediaType,
+        PreviewStatus status
+) {
+    public boolean isEmpty() {
+        return data == null || data.length == 0;
+    }
+}
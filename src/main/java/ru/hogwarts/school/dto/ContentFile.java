@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+public record ContentFile(
+        String contentHash,
+        String filePath
+) {
+}
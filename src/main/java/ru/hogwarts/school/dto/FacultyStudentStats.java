@@ -0,0 +1,9 @@
+package ru.hogwarts.school.dto;
+
+public record FacultyStudentStats(
+        long facultyId,
+        String facultyName,
+        long studentCount,
+        Double averageAge
+) {
+}
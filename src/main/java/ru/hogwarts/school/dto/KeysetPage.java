@@ -0,0 +1,17 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница keyset-пагинации: следующая страница запрашивается с {@code afterId = nextAfterId}.
+ * {@code nextAfterId == null} - это последняя страница.
+ */
+public record KeysetPage<T>(
+        List<T> items,
+        Long nextAfterId
+) {
+    public <R> KeysetPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new KeysetPage<>(items.stream().<R>map(mapper).toList(), nextAfterId);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.hogwarts.school.dto;
+
+public record PreviewCacheStats(
+        long hits,
+        long misses,
+        long evictions,
+        int entries,
+        long sizeBytes,
+        long maxBytes
+) {
+}
@@ -0,0 +1,8 @@
+package ru.hogwarts.school.dto;
+
+public record StudentAgeSummary(
+        long id,
+        String name,
+        int age
+) {
+}
@@ -0,0 +1,6 @@
+package ru.hogwarts.school.dto;
+
+public record StudentImportResult(
+        long imported
+) {
+}
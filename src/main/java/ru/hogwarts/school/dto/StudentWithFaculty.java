@@ -6,4 +6,11 @@ public record StudentWithFaculty(
         int age,
         FacultyWithoutStudents faculty
 ){
+    /**
+     * Конструктор для JPQL-проекции с left join: вложенный record в {@code select new} не собрать,
+     * поэтому факультет приходит плоскими колонками, а у студента без факультета они все null
+     */
+    public StudentWithFaculty(long id, String name, int age, Long facultyId, String facultyName, String facultyColor) {
+        this(id, name, age, facultyId != null ? new FacultyWithoutStudents(facultyId, facultyName, facultyColor) : null);
+    }
 }
@@ -2,11 +2,16 @@ package ru.hogwarts.school.model;
 
 import jakarta.persistence.*;
 
-import java.util.Arrays;
+import java.time.Instant;
 import java.util.Objects;
 
+/**
+ * Метаданные аватара. Байты превью хранятся отдельно, в {@link AvatarRendition},
+ * поэтому загрузка аватара не тянет бинарные данные в память.
+ * Аватары с одинаковым содержимым ссылаются на один файл и один набор превью через contentHash
+ */
 @Entity
-@Table(name = "avatars")
+@Table(name = "avatars", indexes = @Index(name = "idx_avatars_content_hash", columnList = "content_hash"))
 public class Avatar {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -16,8 +21,16 @@ public class Avatar {
     private long fileSize;
     private String mediaType;
 
-    @Lob
-    private byte[] data;
+    // SHA-256 содержимого файла в hex
+    @Column(length = 64)
+    private String contentHash;
+
+    @Enumerated(EnumType.STRING)
+    private PreviewStatus previewStatus;
+
+    // Когда у аватара сменилось содержимое: Last-Modified оригинала. Время изменения файла для этого не годится -
+    // файл общий для аватаров с тем же содержимым и обновляется при каждом его переиспользовании
+    private Instant updatedAt;
 
     @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "student_id")
@@ -27,12 +40,11 @@ public class Avatar {
     public Avatar() {
     }
 
-    public Avatar(Long id, String filePath, long fileSize, String mediaType, byte[] data, Student student) {
+    public Avatar(Long id, String filePath, long fileSize, String mediaType, Student student) {
         this.id = id;
         this.filePath = filePath;
         this.fileSize = fileSize;
         this.mediaType = mediaType;
-        this.data = data;
         this.student = student;
     }
 
@@ -69,12 +81,28 @@ public class Avatar {
         this.mediaType = mediaType;
     }
 
-    public byte[] getData() {
-        return data;
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public PreviewStatus getPreviewStatus() {
+        return previewStatus;
+    }
+
+    public void setPreviewStatus(PreviewStatus previewStatus) {
+        this.previewStatus = previewStatus;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
     }
 
-    public void setData(byte[] data) {
-        this.data = data;
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
     }
 
     public Student getStudent() {
@@ -107,7 +135,9 @@ public class Avatar {
                 ", filePath='" + filePath + '\'' +
                 ", fileSize=" + fileSize +
                 ", mediaType='" + mediaType + '\'' +
-                ", data=" + Arrays.toString(data) +
+                ", contentHash='" + contentHash + '\'' +
+                ", previewStatus=" + previewStatus +
+                ", updatedAt=" + updatedAt +
                 ", student=" + (student != null ? student.getId() : "null") +
                 '}';
     }
@@ -0,0 +1,121 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.*;
+
+import java.util.Objects;
+
+/**
+ * Уменьшенная копия аватара заданной ширины. Для каждого содержимого (contentHash)
+ * хранится один набор таких копий, общий для всех аватаров с этим содержимым
+ */
+@Entity
+@Table(name = "avatar_renditions", indexes = @Index(name = "idx_avatar_renditions_content_hash", columnList = "content_hash"))
+public class AvatarRendition {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private int width;
+    private int height;
+    private long fileSize;
+    private String mediaType;
+
+    // Превью - десятки килобайт: хранятся в самой строке (bytea), а не large object'ом, который в PostgreSQL
+    // читается отдельным API и остаётся в pg_largeobject после удаления строки
+    private byte[] data;
+
+    @Column(length = 64)
+    private String contentHash;
+
+    public AvatarRendition() {
+    }
+
+    public AvatarRendition(int width, int height, String mediaType, byte[] data) {
+        this.width = width;
+        this.height = height;
+        this.mediaType = mediaType;
+        this.data = data;
+        this.fileSize = data.length;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public void setMediaType(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvatarRendition that = (AvatarRendition) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarRendition{" +
+                "id=" + id +
+                ", width=" + width +
+                ", height=" + height +
+                ", fileSize=" + fileSize +
+                ", mediaType='" + mediaType + '\'' +
+                ", contentHash='" + contentHash + '\'' +
+                '}';
+    }
+}
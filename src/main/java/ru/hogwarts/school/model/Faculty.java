@@ -4,15 +4,24 @@ package ru.hogwarts.school.model;
 import jakarta.persistence.*;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 @Entity
+// Поиск без учёта регистра идёт по колонкам в нижнем регистре: условие lower(name) = lower(?) обычный индекс не использует
+@Table(indexes = {
+        @Index(name = "idx_faculty_name_normalized", columnList = "name_normalized"),
+        @Index(name = "idx_faculty_color_normalized", columnList = "color_normalized")
+})
 public class Faculty {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     private String name;
     private String color;
+    // Заполняются в сеттерах названия и цвета, см. normalize
+    private String nameNormalized;
+    private String colorNormalized;
 
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "faculty")
     private List<Student> students;
@@ -31,6 +40,7 @@ public class Faculty {
 
     public void setColor(String color) {
         this.color = color;
+        this.colorNormalized = normalize(color);
     }
 
     public String getName() {
@@ -39,6 +49,7 @@ public class Faculty {
 
     public void setName(String name) {
         this.name = name;
+        this.nameNormalized = normalize(name);
     }
 
     public Long getId() {
@@ -49,6 +60,13 @@ public class Faculty {
         this.id = id;
     }
 
+    /**
+     * Значение для колонок *_normalized и для параметров поиска по ним
+     */
+    public static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
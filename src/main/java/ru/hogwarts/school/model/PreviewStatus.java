@@ -0,0 +1,10 @@
+package ru.hogwarts.school.model;
+
+/**
+ * Состояние превью аватара: генерация идёт в фоне после загрузки файла
+ */
+public enum PreviewStatus {
+    PENDING,
+    READY,
+    FAILED
+}
@@ -6,9 +6,20 @@ import jakarta.persistence.*;
 import java.util.Objects;
 
 @Entity
+// Индексы для фильтров по возрасту (/students/age/{age} и /students/age-range) и для выборок и группировки
+// по факультету: PostgreSQL не создаёт индекс на внешний ключ сам
+@Table(indexes = {
+        @Index(name = "idx_student_age", columnList = "age"),
+        @Index(name = "idx_student_faculty_id", columnList = "faculty_id")
+})
 public class Student {
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Последовательность с pooled-оптимизатором: Hibernate берёт из БД сразу 50 id и может отправлять вставки
+    // пачками (hibernate.jdbc.batch_size). С IDENTITY id известен только после INSERT, и пакетная вставка отключается
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "student_seq")
+    @SequenceGenerator(name = "student_seq", sequenceName = "student_seq", allocationSize = Student.ID_ALLOCATION_SIZE)
     private Long id;
     private String name;
     private int age;
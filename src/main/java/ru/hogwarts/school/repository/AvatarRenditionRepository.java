@@ -0,0 +1,23 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.model.AvatarRendition;
+
+import java.util.Optional;
+
+@Transactional(readOnly = true)
+public interface AvatarRenditionRepository extends JpaRepository<AvatarRendition, Long> {
+    Optional<AvatarRendition> findFirstByContentHashAndWidthGreaterThanEqualOrderByWidthAsc(String contentHash, int width);
+
+    Optional<AvatarRendition> findFirstByContentHashOrderByWidthDesc(String contentHash);
+
+    boolean existsByContentHash(String contentHash);
+
+    @Modifying
+    @Transactional
+    @Query("delete from AvatarRendition r where r.contentHash = :contentHash")
+    void deleteByContentHash(String contentHash);
+}
@@ -1,10 +1,54 @@
 package ru.hogwarts.school.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.ContentFile;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.PreviewStatus;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+@Transactional(readOnly = true)
 public interface AvatarRepository extends JpaRepository<Avatar, Long> {
     Optional<Avatar> findByStudentId(Long studentId);
+
+    List<Avatar> findByStudentIdIn(Collection<Long> studentIds);
+
+    /**
+     * Аватары с этим содержимым, заблокированные до конца транзакции (SELECT ... FOR UPDATE). Загрузка берёт
+     * блокировку перед тем, как переиспользовать содержимое, поэтому параллельное удаление последней ссылки
+     * на него либо завершится раньше (и загрузка увидит, что ссылок нет), либо дождётся её коммита.
+     * Порядок по id - чтобы пачки импорта брали блокировки в одном порядке и не попадали в deadlock
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Transactional
+    List<Avatar> findByContentHashInOrderById(Collection<String> contentHashes);
+
+    boolean existsByContentHash(String contentHash);
+
+    /**
+     * Какие из {@code contentHashes} используются аватарами: один запрос на пачку вместо existsByContentHash на каждый
+     */
+    @Query("select distinct a.contentHash from Avatar a where a.contentHash in :contentHashes")
+    Set<String> findExistingContentHashes(Collection<String> contentHashes);
+
+    // Число ссылок на содержимое: файл и превью удаляются, когда ссылок не осталось
+    long countByContentHash(String contentHash);
+
+    // Одна строка на содержимое: у всех аватаров с одним хешем общий файл
+    @Query("select new ru.hogwarts.school.dto.ContentFile(a.contentHash, min(a.filePath)) " +
+            "from Avatar a where a.previewStatus = :status and a.contentHash is not null group by a.contentHash")
+    List<ContentFile> findContentByPreviewStatus(PreviewStatus status);
+
+    @Modifying
+    @Transactional
+    @Query("update Avatar a set a.previewStatus = :status where a.contentHash = :contentHash")
+    void updatePreviewStatusByContentHash(String contentHash, PreviewStatus status);
 }
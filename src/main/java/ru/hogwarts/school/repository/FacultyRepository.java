@@ -1,14 +1,60 @@
 package ru.hogwarts.school.repository;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.FacultyWithoutStudents;
 import ru.hogwarts.school.model.Faculty;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+@Transactional(readOnly = true)
 public interface FacultyRepository extends JpaRepository<Faculty, Long> {
-    Collection<Faculty> findByColorIgnoreCase(String color);
+    @Query("select new ru.hogwarts.school.dto.FacultyWithoutStudents(f.id, f.name, f.color) from Faculty f order by f.id")
+    List<FacultyWithoutStudents> findAllSummaries();
+
+    /**
+     * Поиск по названию или цвету: два поиска по индексам, объединённые UNION (он же убирает повторы).
+     * Условие с OR по двум колонкам БД выполняет одним просмотром всей таблицы
+     */
+    String FIND_BY_NAME_OR_COLOR_SQL = "SELECT f.* FROM faculty f WHERE f.name_normalized = :name "
+            + "UNION SELECT f.* FROM faculty f WHERE f.color_normalized = :color ORDER BY id";
+
+    /**
+     * @param color цвет, приведённый {@link Faculty#normalize}
+     */
+    @Query("select new ru.hogwarts.school.dto.FacultyWithoutStudents(f.id, f.name, f.color) from Faculty f "
+            + "where f.colorNormalized = :color")
+    Collection<FacultyWithoutStudents> findByColorNormalized(String color);
+
+    /**
+     * @param name  название, приведённое {@link Faculty#normalize}
+     * @param color цвет, приведённый {@link Faculty#normalize}
+     */
+    @Query(value = FIND_BY_NAME_OR_COLOR_SQL, nativeQuery = true)
+    List<Faculty> findByNameNormalizedOrColorNormalized(String name, String color);
+
+    /**
+     * Факультет вместе со студентами одним запросом: без entity graph маппер
+     * догружал бы коллекцию студентов отдельным запросом на каждый факультет
+     */
+    @EntityGraph(attributePaths = "students")
+    Optional<Faculty> findWithStudentsById(long id);
 
-    Collection<Faculty> findByNameIgnoreCaseOrColorIgnoreCase(String facultyName, String facultyColor);
+    @Query("select new ru.hogwarts.school.dto.FacultyWithoutStudents(f.id, f.name, f.color) from Faculty f "
+            + "where f.id > :afterId order by f.id")
+    List<FacultyWithoutStudents> findPageAfter(long afterId, Limit limit);
 
-    Faculty findByStudentsId(Long studentId);
+    @Query("select new ru.hogwarts.school.dto.FacultyWithoutStudents(f.id, f.name, f.color) from Faculty f order by f.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<FacultyWithoutStudents> streamAllSummaries();
 }
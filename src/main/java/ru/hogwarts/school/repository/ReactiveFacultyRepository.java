@@ -0,0 +1,56 @@
+package ru.hogwarts.school.repository;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import ru.hogwarts.school.dto.FacultyWithoutStudents;
+
+/**
+ * Чтения факультетов через R2DBC. Поиск по названию и цвету идёт по нормализованным колонкам с индексами,
+ * как и в {@link FacultyRepository}
+ */
+@Repository
+public class ReactiveFacultyRepository {
+    private static final String SELECT = "SELECT f.id, f.name, f.color FROM faculty f ";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveFacultyRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Flux<FacultyWithoutStudents> findAll() {
+        return databaseClient.sql(SELECT + "ORDER BY f.id")
+                .map(ReactiveFacultyRepository::toFaculty)
+                .all();
+    }
+
+    /**
+     * @param color цвет, нормализованный {@link ru.hogwarts.school.model.Faculty#normalize(String)}
+     */
+    public Flux<FacultyWithoutStudents> findByColorNormalized(String color) {
+        return databaseClient.sql(SELECT + "WHERE f.color_normalized = :color ORDER BY f.id")
+                .bind("color", color)
+                .map(ReactiveFacultyRepository::toFaculty)
+                .all();
+    }
+
+    /**
+     * @param query название или цвет, нормализованные {@link ru.hogwarts.school.model.Faculty#normalize(String)}
+     */
+    public Flux<FacultyWithoutStudents> findByNameOrColorNormalized(String query) {
+        return databaseClient.sql(SELECT + """
+                        WHERE f.name_normalized = :query OR f.color_normalized = :query
+                        ORDER BY f.id
+                        """)
+                .bind("query", query)
+                .map(ReactiveFacultyRepository::toFaculty)
+                .all();
+    }
+
+    private static FacultyWithoutStudents toFaculty(Readable row) {
+        return new FacultyWithoutStudents(row.get("id", Long.class), row.get("name", String.class),
+                row.get("color", String.class));
+    }
+}
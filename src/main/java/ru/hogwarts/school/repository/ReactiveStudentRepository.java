@@ -0,0 +1,80 @@
+package ru.hogwarts.school.repository;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+
+/**
+ * Чтения студентов через R2DBC. Строки читаются порциями по {@code reactive.fetch-size}
+ * и только по мере запроса подписчика: медленный клиент не заставляет держать в памяти весь результат
+ */
+@Repository
+public class ReactiveStudentRepository {
+    private static final String SELECT = "SELECT s.id, s.name FROM student s ";
+
+    private final DatabaseClient databaseClient;
+    private final int fetchSize;
+
+    public ReactiveStudentRepository(DatabaseClient databaseClient,
+                                     @Value("${reactive.fetch-size:256}") int fetchSize) {
+        this.databaseClient = databaseClient;
+        this.fetchSize = fetchSize;
+    }
+
+    public Flux<StudentWithoutFaculty> findAll() {
+        return query(databaseClient.sql(SELECT + "ORDER BY s.id"));
+    }
+
+    public Flux<StudentWithoutFaculty> findByAgeBetween(int minAge, int maxAge) {
+        return query(databaseClient.sql(SELECT + "WHERE s.age BETWEEN :minAge AND :maxAge ORDER BY s.id")
+                .bind("minAge", minAge)
+                .bind("maxAge", maxAge));
+    }
+
+    public Flux<StudentWithoutFaculty> findByFacultyId(long facultyId) {
+        return query(databaseClient.sql(SELECT + "WHERE s.faculty_id = :facultyId ORDER BY s.id")
+                .bind("facultyId", facultyId));
+    }
+
+    /**
+     * Подстрока имени без учёта регистра с тем же ранжированием, что у {@link StudentNameSearchRepository},
+     * кроме similarity: запрос должен работать и на H2. На PostgreSQL условие обслуживает тот же GIN-индекс
+     *
+     * @param query запрос в нижнем регистре
+     */
+    public Flux<StudentWithoutFaculty> searchByName(String query, int limit) {
+        String escaped = escapeLike(query);
+        return query(databaseClient.sql(SELECT + """
+                        WHERE lower(s.name) LIKE :contains
+                        ORDER BY CASE
+                                     WHEN lower(s.name) LIKE :prefix THEN 0
+                                     WHEN lower(s.name) LIKE :wordPrefix THEN 1
+                                     ELSE 2
+                                 END,
+                                 length(s.name),
+                                 s.id
+                        LIMIT :limit
+                        """)
+                .bind("contains", "%" + escaped + "%")
+                .bind("prefix", escaped + "%")
+                .bind("wordPrefix", "% " + escaped + "%")
+                .bind("limit", limit));
+    }
+
+    private Flux<StudentWithoutFaculty> query(DatabaseClient.GenericExecuteSpec spec) {
+        return spec.filter(statement -> statement.fetchSize(fetchSize))
+                .map(ReactiveStudentRepository::toStudent)
+                .all();
+    }
+
+    private static StudentWithoutFaculty toStudent(Readable row) {
+        return new StudentWithoutFaculty(row.get("id", Long.class), row.get("name", String.class));
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
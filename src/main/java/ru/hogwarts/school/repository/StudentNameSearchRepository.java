@@ -0,0 +1,116 @@
+package ru.hogwarts.school.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.List;
+
+/**
+ * Поиск студентов по имени в БД. На PostgreSQL условие {@code lower(name) LIKE '%...%'} обслуживает GIN-индекс
+ * idx_student_name_trgm по триграммам pg_trgm (миграция V2), а не последовательный просмотр, как ILIKE
+ * без индекса. Ранжирование такое же, как у индекса в памяти: совпадение с начала имени, с начала слова,
+ * затем по похожести ({@code similarity}) и id. На других БД (H2) без pg_trgm - тот же LIKE просмотром таблицы,
+ * а вместо похожести - длина имени, как у индекса в памяти
+ */
+@Repository
+public class StudentNameSearchRepository {
+    static final String METRIC = "spring.data.repository.invocations";
+
+    private static final String SEARCH_SQL = """
+            SELECT s.id, s.name
+            FROM student s
+            WHERE lower(s.name) LIKE ?
+            ORDER BY CASE
+                         WHEN lower(s.name) LIKE ? THEN 0
+                         WHEN lower(s.name) LIKE ? THEN 1
+                         ELSE 2
+                     END,
+                     similarity(lower(s.name), ?) DESC,
+                     s.id
+            LIMIT ?
+            """;
+
+    private static final String PORTABLE_SEARCH_SQL = """
+            SELECT s.id, s.name
+            FROM student s
+            WHERE lower(s.name) LIKE ?
+            ORDER BY CASE
+                         WHEN lower(s.name) LIKE ? THEN 0
+                         WHEN lower(s.name) LIKE ? THEN 1
+                         ELSE 2
+                     END,
+                     length(s.name),
+                     s.id
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean trigramSearch;
+
+    public StudentNameSearchRepository(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.trigramSearch = isPostgreSql(jdbcTemplate.getDataSource());
+    }
+
+    /**
+     * @param query запрос в нижнем регистре
+     */
+    @Transactional(readOnly = true)
+    public List<StudentWithoutFaculty> search(String query, int limit) {
+        String escaped = escapeLike(query);
+        // Метрика та же, что Spring Boot пишет для методов Spring Data репозиториев, чтобы запросы были в одном ряду.
+        // Набор тегов обязан совпадать с DefaultRepositoryTagsProvider: Prometheus не примет метрику
+        // с тем же именем и другими ключами тегов
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String state = "ERROR";
+        String exception = "None";
+        try {
+            Object[] args = trigramSearch
+                    ? new Object[]{"%" + escaped + "%", escaped + "%", "% " + escaped + "%", query, limit}
+                    : new Object[]{"%" + escaped + "%", escaped + "%", "% " + escaped + "%", limit};
+            List<StudentWithoutFaculty> result = jdbcTemplate.query(trigramSearch ? SEARCH_SQL : PORTABLE_SEARCH_SQL,
+                    (rs, rowNum) -> new StudentWithoutFaculty(rs.getLong("id"), rs.getString("name")), args);
+            state = "SUCCESS";
+            return result;
+        } catch (RuntimeException e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METRIC)
+                    .tag("repository", StudentNameSearchRepository.class.getSimpleName())
+                    .tag("method", "search")
+                    .tag("state", state)
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Экранирует спецсимволы LIKE; обратная косая черта - escape-символ LIKE по умолчанию в PostgreSQL и H2
+     */
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static boolean isPostgreSql(DataSource dataSource) {
+        if (dataSource == null) {
+            return false;
+        }
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (MetaDataAccessException e) {
+            return false;
+        }
+    }
+}
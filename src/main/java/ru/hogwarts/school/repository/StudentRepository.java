@@ -1,15 +1,106 @@
 package ru.hogwarts.school.repository;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.FacultyStudentStats;
+import ru.hogwarts.school.dto.FacultyWithoutStudents;
+import ru.hogwarts.school.dto.StudentAgeSummary;
+import ru.hogwarts.school.dto.StudentWithFaculty;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
 import ru.hogwarts.school.model.Student;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+/**
+ * Списочные методы возвращают DTO через конструктор в JPQL ({@code select new ...}): выбираются только нужные
+ * колонки, а результат не попадает в persistence context - без снимков для dirty checking и без прокси
+ */
+@Transactional(readOnly = true)
 public interface StudentRepository extends JpaRepository<Student, Long> {
-    Collection<Student> findByAge(int age);
+    @Query("select new ru.hogwarts.school.dto.StudentWithoutFaculty(s.id, s.name) from Student s order by s.id")
+    List<StudentWithoutFaculty> findAllSummaries();
+
+    @Query("select new ru.hogwarts.school.dto.StudentWithoutFaculty(s.id, s.name) from Student s where s.age = :age")
+    Collection<StudentWithoutFaculty> findByAge(int age);
+
+    @Query("select new ru.hogwarts.school.dto.StudentWithoutFaculty(s.id, s.name) from Student s "
+            + "where s.age between :minAge and :maxAge")
+    Collection<StudentWithoutFaculty> findByAgeBetween(int minAge, int maxAge);
+
+    @Query("select new ru.hogwarts.school.dto.StudentWithoutFaculty(s.id, s.name) from Student s "
+            + "where s.faculty.id = :facultyId")
+    List<StudentWithoutFaculty> findByFacultyId(Long facultyId);
+
+    @Query("select new ru.hogwarts.school.dto.StudentWithFaculty(s.id, s.name, s.age, f.id, f.name, f.color) "
+            + "from Student s left join s.faculty f where s.id = :id")
+    Optional<StudentWithFaculty> findStudentWithFacultyById(long id);
+
+    /**
+     * Все студенты с возрастом для построения индекса по возрасту
+     */
+    @Query("select new ru.hogwarts.school.dto.StudentAgeSummary(s.id, s.name, s.age) from Student s")
+    List<StudentAgeSummary> findAllAgeSummaries();
+
+    @Query("select new ru.hogwarts.school.dto.AgeCount(s.age, count(s)) from Student s group by s.age order by s.age")
+    List<AgeCount> countByAge();
+
+    @Query("select avg(s.age) from Student s")
+    Double findAverageAge();
+
+    /**
+     * Последние добавленные студенты: {@code ORDER BY id DESC LIMIT n} читает только n строк индекса первичного ключа
+     */
+    @Query("select new ru.hogwarts.school.dto.StudentWithoutFaculty(s.id, s.name) from Student s order by s.id desc")
+    List<StudentWithoutFaculty> findLast(Limit limit);
+
+    /**
+     * Количество и средний возраст студентов каждого факультета одним GROUP BY.
+     * Left join оставляет факультеты без студентов: у них количество 0, а средний возраст {@code null}
+     */
+    @Query("select new ru.hogwarts.school.dto.FacultyStudentStats(f.id, f.name, count(s), avg(s.age)) "
+            + "from Faculty f left join f.students s group by f.id, f.name order by f.id")
+    List<FacultyStudentStats> findFacultyStats();
+
+    /**
+     * {@code s.faculty.id} читается из внешнего ключа самой таблицы студентов, без join с факультетами
+     */
+    @Query("select s.faculty.id from Student s where s.id = :studentId and s.faculty is not null")
+    Optional<Long> findFacultyIdById(long studentId);
+
+    /**
+     * Какие из {@code ids} есть в таблице: один запрос по первичному ключу вместо existsById на каждый id
+     */
+    @Query("select s.id from Student s where s.id in :ids")
+    Set<Long> findExistingIds(Collection<Long> ids);
+
+    @Query("select new ru.hogwarts.school.dto.FacultyWithoutStudents(f.id, f.name, f.color) "
+            + "from Student s join s.faculty f where s.id = :studentId")
+    Optional<FacultyWithoutStudents> findFacultyByStudentId(long studentId);
 
-    Collection<Student> findByAgeBetween(int minAge, int maxAge);
+    /**
+     * Keyset-страница: {@code WHERE id > :afterId ORDER BY id LIMIT :limit} идёт по первичному ключу,
+     * поэтому стоимость не растёт с номером страницы, в отличие от OFFSET
+     */
+    @Query("select new ru.hogwarts.school.dto.StudentWithoutFaculty(s.id, s.name) from Student s "
+            + "where s.id > :afterId order by s.id")
+    List<StudentWithoutFaculty> findPageAfter(long afterId, Limit limit);
 
-    List<Student> findByFacultyId(Long facultyId);
+    /**
+     * Все студенты курсором: строки подтягиваются из БД порциями по fetch size по мере чтения потока.
+     * Поток нужно читать внутри транзакции и закрывать
+     */
+    @Query("select new ru.hogwarts.school.dto.StudentWithoutFaculty(s.id, s.name) from Student s order by s.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<StudentWithoutFaculty> streamAllSummaries();
 }
@@ -0,0 +1,86 @@
+package ru.hogwarts.school.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Форматы изображений, которые принимаются как аватар, и их сигнатуры (magic bytes).
+ * Формат определяется по первым байтам содержимого, а не по имени файла или Content-Type клиента.
+ */
+public enum AvatarImageFormat {
+    JPEG("image/jpeg", "jpg") {
+        @Override
+        boolean matches(byte[] header) {
+            return startsWith(header, 0xFF, 0xD8, 0xFF);
+        }
+    },
+    PNG("image/png", "png") {
+        @Override
+        boolean matches(byte[] header) {
+            return startsWith(header, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A);
+        }
+    },
+    GIF("image/gif", "gif") {
+        @Override
+        boolean matches(byte[] header) {
+            return startsWith(header, 'G', 'I', 'F', '8');
+        }
+    },
+    WEBP("image/webp", "webp") {
+        @Override
+        boolean matches(byte[] header) {
+            // RIFF <размер, 4 байта> WEBP
+            return startsWith(header, 'R', 'I', 'F', 'F')
+                    && header.length >= 12
+                    && "WEBP".equals(new String(header, 8, 4, StandardCharsets.US_ASCII));
+        }
+    },
+    BMP("image/bmp", "bmp") {
+        @Override
+        boolean matches(byte[] header) {
+            return startsWith(header, 'B', 'M');
+        }
+    };
+
+    /**
+     * Сколько первых байтов нужно, чтобы распознать любой из форматов
+     */
+    public static final int HEADER_LENGTH = 12;
+
+    private final String mediaType;
+    private final String extension;
+
+    AvatarImageFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    abstract boolean matches(byte[] header);
+
+    public static Optional<AvatarImageFormat> detect(byte[] header) {
+        return Arrays.stream(values())
+                .filter(format -> format.matches(header))
+                .findFirst();
+    }
+
+    private static boolean startsWith(byte[] header, int... signature) {
+        if (header.length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((header[i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
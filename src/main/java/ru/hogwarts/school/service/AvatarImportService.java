@@ -0,0 +1,214 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.dto.AvatarImportResult;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Массовый импорт аватаров из zip-архива. Имя файла в архиве - id студента ({@code 42.jpg}), формат
+ * определяется по сигнатуре содержимого ({@link AvatarImageFormat}), а не по расширению.
+ * Архив читается потоково: хеширование и запись на диск идут в отдельном пуле параллельно
+ * с чтением следующих записей, а в БД файлы привязываются пачками по одной транзакции на пачку.
+ * Файл записывается, только если студент существует: иначе каждая ошибочная запись оставляла бы
+ * на диске файл без ссылок. Студенты проверяются одним запросом на порцию прочитанных записей
+ * (не больше {@code avatar.import.batch-size} записей и {@code avatar.import.lookup-buffer-bytes} байт).
+ * Студента, удалённого уже после записи файла, отклонит пачка, а сам файл уберёт плановая сверка
+ * хранилища ({@link AvatarStorageReconciler}) по истечении grace-периода.
+ */
+@Service
+public class AvatarImportService {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarImportService.class);
+
+    private final AvatarService avatarService;
+    private final AvatarStorage storage;
+    private final StudentRepository studentRepository;
+    private final AsyncTaskExecutor importExecutor;
+    private final int batchSize;
+    private final int maxEntryBytes;
+    private final long lookupBufferBytes;
+
+    public AvatarImportService(AvatarService avatarService,
+                               AvatarStorage storage,
+                               StudentRepository studentRepository,
+                               @Qualifier("avatarImportExecutor") AsyncTaskExecutor importExecutor,
+                               @Value("${avatar.import.batch-size:50}") int batchSize,
+                               @Value("${avatar.import.max-entry-bytes:5242880}") int maxEntryBytes,
+                               @Value("${avatar.import.lookup-buffer-bytes:16777216}") long lookupBufferBytes) {
+        this.avatarService = avatarService;
+        this.storage = storage;
+        this.studentRepository = studentRepository;
+        this.importExecutor = importExecutor;
+        this.batchSize = batchSize;
+        this.maxEntryBytes = maxEntryBytes;
+        this.lookupBufferBytes = lookupBufferBytes;
+    }
+
+    /**
+     * Результат по каждому файлу архива. Если архив повреждён или оборван, записи до повреждённой всё равно
+     * записываются и привязываются, а отчёт заканчивается отметкой {@link AvatarImportResult.Status#ARCHIVE_ERROR}
+     */
+    public List<AvatarImportResult> importArchive(InputStream archive) throws IOException {
+        List<AvatarImportResult> results = new ArrayList<>();
+        // Прочитанные записи, студенты которых ещё не проверены
+        List<ReadEntry> unchecked = new ArrayList<>(batchSize);
+        List<PendingEntry> batch = new ArrayList<>(batchSize);
+        String currentFileName = null;
+
+        try (ZipInputStream zip = new ZipInputStream(archive)) {
+            long uncheckedBytes = 0;
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String fileName = Path.of(entry.getName()).getFileName().toString();
+                Long studentId = parseStudentId(fileName);
+                if (studentId == null) {
+                    results.add(AvatarImportResult.failed(fileName, null, "File name must be <studentId>.<extension>"));
+                    continue;
+                }
+                currentFileName = fileName;
+                byte[] data = zip.readNBytes(maxEntryBytes + 1);
+                currentFileName = null;
+                if (data.length > maxEntryBytes) {
+                    results.add(AvatarImportResult.failed(fileName, studentId, "File is larger than " + maxEntryBytes + " bytes"));
+                    continue;
+                }
+                // Формат - по сигнатуре, как у потоковой загрузки: расширение в имени файла ничего не гарантирует
+                Optional<AvatarImageFormat> format = AvatarImageFormat.detect(data);
+                if (format.isEmpty()) {
+                    results.add(AvatarImportResult.failed(fileName, studentId, "Unsupported image format"));
+                    continue;
+                }
+
+                unchecked.add(new ReadEntry(fileName, studentId, format.get(), data));
+                uncheckedBytes += data.length;
+                if (unchecked.size() >= batchSize || uncheckedBytes >= lookupBufferBytes) {
+                    submitExisting(unchecked, batch, results);
+                    unchecked.clear();
+                    uncheckedBytes = 0;
+                }
+            }
+        } catch (ZipException | EOFException e) {
+            logger.warn("Avatar archive is corrupted at {}", currentFileName, e);
+            try {
+                completeImport(unchecked, batch, results);
+            } catch (RuntimeException completionFailure) {
+                completionFailure.addSuppressed(e);
+                throw completionFailure;
+            }
+            results.add(AvatarImportResult.archiveError(currentFileName, "Archive is corrupted: " + e.getMessage()));
+            return results;
+        } catch (IOException | RuntimeException e) {
+            // Записываем и привязываем то, что уже успели прочитать; ошибка привязки не должна скрыть исходную
+            try {
+                completeImport(unchecked, batch, results);
+            } catch (RuntimeException completionFailure) {
+                e.addSuppressed(completionFailure);
+            }
+            throw e;
+        }
+        completeImport(unchecked, batch, results);
+        return results;
+    }
+
+    private void completeImport(List<ReadEntry> unchecked, List<PendingEntry> batch, List<AvatarImportResult> results) {
+        if (!unchecked.isEmpty()) {
+            submitExisting(unchecked, batch, results);
+            unchecked.clear();
+        }
+        if (!batch.isEmpty()) {
+            results.addAll(flush(batch));
+            batch.clear();
+        }
+    }
+
+    /**
+     * Проверяет студентов порции одним запросом и отправляет в пул запись файлов существующих.
+     * Заполненная пачка сразу привязывается в БД
+     */
+    private void submitExisting(List<ReadEntry> entries, List<PendingEntry> batch, List<AvatarImportResult> results) {
+        Set<Long> existingIds = studentRepository.findExistingIds(
+                entries.stream().map(ReadEntry::studentId).collect(Collectors.toSet()));
+        for (ReadEntry entry : entries) {
+            if (!existingIds.contains(entry.studentId())) {
+                results.add(AvatarImportResult.failed(entry.fileName(), entry.studentId(), "Student not found"));
+                continue;
+            }
+            batch.add(new PendingEntry(entry.fileName(), entry.studentId(),
+                    importExecutor.submit(() -> store(entry))));
+            if (batch.size() >= batchSize) {
+                results.addAll(flush(batch));
+                batch.clear();
+            }
+        }
+    }
+
+    private StoredAvatarFile store(ReadEntry entry) throws IOException {
+        byte[] data = entry.data();
+        String contentHash = storage.hash(new ByteArrayInputStream(data));
+        Path filePath = storage.store(new ByteArrayInputStream(data), contentHash, entry.format().getExtension());
+        return new StoredAvatarFile(entry.fileName(), entry.studentId(), contentHash, filePath, data.length,
+                entry.format().getMediaType());
+    }
+
+    /**
+     * Дожидается записи файлов пачки и одной транзакцией привязывает их к студентам
+     */
+    private List<AvatarImportResult> flush(List<PendingEntry> batch) {
+        List<AvatarImportResult> results = new ArrayList<>();
+        List<StoredAvatarFile> stored = new ArrayList<>(batch.size());
+        for (PendingEntry pending : batch) {
+            try {
+                stored.add(pending.file().get());
+            } catch (ExecutionException e) {
+                logger.warn("Failed to store imported avatar {}", pending.fileName(), e.getCause());
+                results.add(AvatarImportResult.failed(pending.fileName(), pending.studentId(), e.getCause().getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(AvatarImportResult.failed(pending.fileName(), pending.studentId(), "Import interrupted"));
+            }
+        }
+        if (!stored.isEmpty()) {
+            results.addAll(avatarService.saveImportBatch(stored));
+        }
+        return results;
+    }
+
+    private Long parseStudentId(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        try {
+            return Long.valueOf(baseName);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private record ReadEntry(String fileName, Long studentId, AvatarImageFormat format, byte[] data) {
+    }
+
+    private record PendingEntry(String fileName, Long studentId, Future<StoredAvatarFile> file) {
+    }
+}
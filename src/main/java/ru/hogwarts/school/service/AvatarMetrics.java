@@ -0,0 +1,112 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Метрики хранилища аватаров и кеша превью. Размер каталога считается обходом файлов,
+ * поэтому результат переиспользуется {@code avatar.metrics.storage-refresh-seconds} секунд,
+ * а не пересчитывается при каждом опросе Prometheus
+ */
+@Component
+public class AvatarMetrics implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarMetrics.class);
+
+    private final AvatarStorage storage;
+    private final AvatarPreviewCache previewCache;
+    private final long refreshNanos;
+
+    private DirectoryUsage usage;
+    // Обход каталога - файловый ввод-вывод под блокировкой, поэтому не synchronized (закрепил бы виртуальный поток)
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public AvatarMetrics(AvatarStorage storage, AvatarPreviewCache previewCache,
+                         @Value("${avatar.metrics.storage-refresh-seconds:60}") long refreshSeconds) {
+        this.storage = storage;
+        this.previewCache = previewCache;
+        this.refreshNanos = refreshSeconds * 1_000_000_000L;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("avatar.storage.size", this, metrics -> metrics.directoryUsage().bytes())
+                .description("Суммарный размер файлов аватаров на диске")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        Gauge.builder("avatar.storage.files", this, metrics -> metrics.directoryUsage().files())
+                .description("Количество файлов аватаров на диске")
+                .baseUnit(BaseUnits.FILES)
+                .register(registry);
+
+        Gauge.builder("avatar.preview.cache.size", previewCache, cache -> cache.getStats().sizeBytes())
+                .description("Объём превью в кеше")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        Gauge.builder("avatar.preview.cache.entries", previewCache, cache -> cache.getStats().entries())
+                .register(registry);
+        FunctionCounter.builder("avatar.preview.cache.requests", previewCache, cache -> cache.getStats().hits())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("avatar.preview.cache.requests", previewCache, cache -> cache.getStats().misses())
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("avatar.preview.cache.evictions", previewCache, cache -> cache.getStats().evictions())
+                .register(registry);
+    }
+
+    DirectoryUsage directoryUsage() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (usage == null || now - usage.measuredAt() >= refreshNanos) {
+                try {
+                    usage = measure(now);
+                } catch (IOException | UncheckedIOException e) {
+                    // Файлы могут удаляться во время обхода - оставляем прошлое значение до следующего опроса
+                    logger.debug("Cannot measure avatar directory {}: {}", storage.getAvatarsDir(), e.getMessage());
+                    if (usage == null) {
+                        usage = new DirectoryUsage(0, 0, now);
+                    }
+                }
+            }
+            return usage;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private DirectoryUsage measure(long now) throws IOException {
+        Path directory = storage.getAvatarsDir();
+        if (!Files.isDirectory(directory)) {
+            return new DirectoryUsage(0, 0, now);
+        }
+        long files = 0;
+        long bytes = 0;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isRegularFile(path) && !storage.isTempFile(path)) {
+                    files++;
+                    bytes += Files.size(path);
+                }
+            }
+        }
+        return new DirectoryUsage(files, bytes, now);
+    }
+
+    record DirectoryUsage(long files, long bytes, long measuredAt) {
+    }
+}
@@ -0,0 +1,119 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.dto.AvatarPreview;
+import ru.hogwarts.school.dto.PreviewCacheStats;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LRU-кеш превью аватаров с ограничением по суммарному размеру в байтах.
+ * Ключ - ID студента и ширина превью. При переполнении вытесняются давно не запрашиваемые превью.
+ * <p>
+ * Доступ защищён {@link ReentrantLock}, а не {@code synchronized}: ожидающий на мониторе виртуальный поток
+ * закрепляется за потоком-носителем, а на ReentrantLock - отпускает его.
+ */
+@Component
+public class AvatarPreviewCache {
+    private final long maxBytes;
+
+    // accessOrder = true: порядок обхода - от давно использованных к недавним
+    private final LinkedHashMap<PreviewKey, AvatarPreview> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public AvatarPreviewCache(@Value("${avatar.preview.cache.max-bytes:16777216}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public AvatarPreview get(Long studentId, int width) {
+        lock.lock();
+        try {
+            AvatarPreview preview = entries.get(new PreviewKey(studentId, width));
+            if (preview == null) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+            return preview;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(Long studentId, int width, AvatarPreview preview) {
+        lock.lock();
+        try {
+            long size = preview.data().length;
+            if (size > maxBytes) {
+                // Превью больше всего бюджета кешировать бессмысленно
+                return;
+            }
+            AvatarPreview previous = entries.put(new PreviewKey(studentId, width), preview);
+            if (previous != null) {
+                sizeBytes -= previous.data().length;
+            }
+            sizeBytes += size;
+            evictIfNeeded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет превью студента всех ширин
+     */
+    public void invalidate(Long studentId) {
+        lock.lock();
+        try {
+            Iterator<Map.Entry<PreviewKey, AvatarPreview>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<PreviewKey, AvatarPreview> entry = iterator.next();
+                if (entry.getKey().studentId().equals(studentId)) {
+                    sizeBytes -= entry.getValue().data().length;
+                    iterator.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public PreviewCacheStats getStats() {
+        lock.lock();
+        try {
+            return new PreviewCacheStats(
+                    hits.get(),
+                    misses.get(),
+                    evictions.get(),
+                    entries.size(),
+                    sizeBytes,
+                    maxBytes
+            );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<PreviewKey, AvatarPreview>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<PreviewKey, AvatarPreview> eldest = iterator.next();
+            sizeBytes -= eldest.getValue().data().length;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private record PreviewKey(Long studentId, int width) {
+    }
+}
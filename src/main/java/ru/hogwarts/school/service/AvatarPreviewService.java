@@ -0,0 +1,326 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.ContentFile;
+import ru.hogwarts.school.model.AvatarRendition;
+import ru.hogwarts.school.model.PreviewStatus;
+import ru.hogwarts.school.repository.AvatarRenditionRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Фоновая генерация превью аватаров нескольких ширин. Тяжёлая работа (декодирование, масштабирование, кодирование)
+ * выполняется вне транзакции и вне потока запроса; в БД пишется только готовый результат.
+ * <p>
+ * При старте приложения заново ставятся в очередь превью, оставшиеся в статусе PENDING: задачи в очереди пула
+ * не переживают перезапуск.
+ */
+@Service
+@Order(3)
+public class AvatarPreviewService implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarPreviewService.class);
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final AvatarRepository avatarRepository;
+    private final AvatarRenditionRepository renditionRepository;
+    private final TaskExecutor previewExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    // Ширины превью по возрастанию, без повторов
+    private final int[] previewWidths;
+    private final int defaultWidth;
+
+    // Общий на все задачи бюджет памяти под декодирование, в килобайтах
+    private final Semaphore memoryBudget;
+    private final int memoryBudgetPermits;
+
+    public AvatarPreviewService(AvatarRepository avatarRepository,
+                                AvatarRenditionRepository renditionRepository,
+                                @Qualifier("avatarPreviewExecutor") TaskExecutor previewExecutor,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${avatar.preview.widths:64,128,256,512}") int[] previewWidths,
+                                @Value("${avatar.preview.default-width:128}") int defaultWidth,
+                                @Value("${avatar.preview.memory-budget-mb:64}") int memoryBudgetMb) {
+        this.avatarRepository = avatarRepository;
+        this.renditionRepository = renditionRepository;
+        this.previewExecutor = previewExecutor;
+        // Результат пишется в собственной транзакции: при переполнении очереди задача выполняется
+        // в потоке запроса внутри afterCommit, где REQUIRED присоединился бы к уже завершённой транзакции
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.meterRegistry = meterRegistry;
+        this.previewWidths = Arrays.stream(previewWidths).filter(width -> width > 0).distinct().sorted().toArray();
+        if (this.previewWidths.length == 0) {
+            throw new IllegalArgumentException("avatar.preview.widths must contain at least one positive width");
+        }
+        this.defaultWidth = defaultWidth;
+        this.memoryBudgetPermits = Math.max(1, memoryBudgetMb) * 1024;
+        this.memoryBudget = new Semaphore(memoryBudgetPermits, true);
+    }
+
+    /**
+     * Ставит генерацию превью в очередь после коммита текущей транзакции,
+     * чтобы фоновая задача гарантированно увидела сохранённый аватар
+     */
+    public void schedulePreview(String contentHash, Path filePath) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(contentHash, filePath);
+                }
+            });
+        } else {
+            submit(contentHash, filePath);
+        }
+    }
+
+    /**
+     * Ставит в очередь превью, которые не успели сгенерироваться до остановки приложения
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        List<ContentFile> pending = avatarRepository.findContentByPreviewStatus(PreviewStatus.PENDING);
+        if (pending.isEmpty()) {
+            return;
+        }
+        logger.info("Rescheduling preview generation for {} pending avatar contents", pending.size());
+        pending.forEach(content -> submit(content.contentHash(), Path.of(content.filePath())));
+    }
+
+    /**
+     * Аватар к этому моменту уже сохранён, поэтому сбой постановки задачи не должен доходить до запроса:
+     * превью останется в статусе PENDING и будет сгенерировано при следующем старте
+     */
+    private void submit(String contentHash, Path filePath) {
+        try {
+            previewExecutor.execute(() -> generatePreview(contentHash, filePath));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to generate preview for content {}, it stays pending", contentHash, e);
+        }
+    }
+
+    /**
+     * Превью общие для всех аватаров с этим содержимым, поэтому и статус обновляется у всех сразу.
+     * Кеш превью сбрасывать не нужно: в нём бывают только готовые превью, а у этих аватаров был PENDING
+     */
+    private void generatePreview(String contentHash, Path filePath) {
+        List<AvatarRendition> renditions;
+        try {
+            renditions = generateRenditions(filePath);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to generate preview for content {} from {}", contentHash, filePath, e);
+            renditions = List.of();
+        }
+
+        List<AvatarRendition> result = renditions;
+        result.forEach(rendition -> rendition.setContentHash(contentHash));
+        transactionTemplate.executeWithoutResult(tx -> {
+            if (avatarRepository.countByContentHash(contentHash) == 0) {
+                // Пока шла генерация, все аватары с этим содержимым удалили
+                return;
+            }
+            renditionRepository.deleteByContentHash(contentHash);
+            renditionRepository.saveAll(result);
+            avatarRepository.updatePreviewStatusByContentHash(contentHash,
+                    result.isEmpty() ? PreviewStatus.FAILED : PreviewStatus.READY);
+        });
+    }
+
+    /**
+     * Ширина превью из настроенного набора, ближайшая к запрошенной: наименьшая не меньше запрошенной,
+     * а если таких нет - наибольшая. Без подсказки используется ширина по умолчанию.
+     */
+    public int resolveWidth(Integer requestedWidth) {
+        int target = requestedWidth != null ? requestedWidth : defaultWidth;
+        for (int width : previewWidths) {
+            if (width >= target) {
+                return width;
+            }
+        }
+        return previewWidths[previewWidths.length - 1];
+    }
+
+    /**
+     * Генерирует набор превью всех настроенных ширин за одно декодирование оригинала.
+     * Каждое следующее (меньшее) превью масштабируется из предыдущего, а не из оригинала.
+     * Пустой список - файл не является изображением.
+     */
+    List<AvatarRendition> generateRenditions(Path filePath) throws IOException {
+        // Время генерации включает ожидание бюджета памяти: это тоже часть задержки появления превью
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            List<AvatarRendition> renditions = decodeAndScale(filePath);
+            outcome = renditions.isEmpty() ? "not-an-image" : "success";
+            return renditions;
+        } finally {
+            sample.stop(Timer.builder("avatar.preview.generation")
+                    .description("Время генерации набора превью одного аватара")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private List<AvatarRendition> decodeAndScale(Path filePath) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(filePath.toFile())) {
+            Iterator<ImageReader> readers = iis != null ? ImageIO.getImageReaders(iis) : Collections.emptyIterator();
+            // Если это не изображение - превью нет
+            if (!readers.hasNext()) {
+                return List.of();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                String formatName = resolveFormatName(getExtensions(filePath.getFileName().toString()));
+                return generateRenditions(reader, formatName);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private List<AvatarRendition> generateRenditions(ImageReader reader, String formatName) throws IOException {
+        // Размеры берутся из заголовка файла, пиксели ещё не декодированы
+        int originalWidth = reader.getWidth(0);
+        int originalHeight = reader.getHeight(0);
+        if (originalWidth == 0 || originalHeight == 0) {
+            return List.of();
+        }
+
+        // Декодируем сразу с прореживанием: ширина результата не меньше самого большого превью,
+        // поэтому память на декодирование ограничена размером превью, а не оригинала
+        int maxWidth = Math.min(previewWidths[previewWidths.length - 1], originalWidth);
+        int subsampling = Math.max(1, originalWidth / maxWidth);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+        long decodedPixels = (long) ceilDiv(originalWidth, subsampling) * ceilDiv(originalHeight, subsampling);
+        // Декодированное изображение плюс все превью (их суммарная площадь меньше исходной)
+        int permits = toBudgetPermits(decodedPixels * BYTES_PER_PIXEL * 2);
+        acquireMemory(permits);
+        try {
+            BufferedImage decodedImage = reader.read(0, param);
+            logger.debug("Decoded {}x{} image as {}x{} (subsampling {})", originalWidth, originalHeight,
+                    decodedImage.getWidth(), decodedImage.getHeight(), subsampling);
+            return scaleToRenditions(decodedImage, formatName);
+        } finally {
+            memoryBudget.release(permits);
+        }
+    }
+
+    private List<AvatarRendition> scaleToRenditions(BufferedImage decodedImage, String formatName) throws IOException {
+        List<AvatarRendition> renditions = new ArrayList<>();
+        BufferedImage source = decodedImage;
+        int previousWidth = -1;
+        for (int i = previewWidths.length - 1; i >= 0; i--) {
+            // Не увеличиваем изображения уже оригинала
+            int width = Math.min(previewWidths[i], decodedImage.getWidth());
+            if (width == previousWidth) {
+                continue;
+            }
+            BufferedImage scaled = scale(source, width, formatName);
+            renditions.add(new AvatarRendition(scaled.getWidth(), scaled.getHeight(),
+                    "image/" + formatName, encode(scaled, formatName)));
+            source = scaled;
+            previousWidth = width;
+        }
+        Collections.reverse(renditions);
+        return renditions;
+    }
+
+    /**
+     * Бюджет памяти считается в килобайтах. Задача больше всего бюджета всё равно выполняется,
+     * но только когда других задач нет
+     */
+    private int toBudgetPermits(long bytes) {
+        long kilobytes = Math.max(1, bytes / 1024);
+        return (int) Math.min(kilobytes, memoryBudgetPermits);
+    }
+
+    private void acquireMemory(int permits) throws IOException {
+        try {
+            memoryBudget.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for preview memory budget");
+        }
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private BufferedImage scale(BufferedImage source, int width, String formatName) {
+        // Рассчитываем высоту пропорционально ширине
+        int height = Math.max(1, source.getHeight() * width / source.getWidth());
+        // У JPEG нет альфа-канала, для остальных форматов сохраняем прозрачность
+        int imageType = "jpeg".equals(formatName) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage scaled = new BufferedImage(width, height, imageType);
+
+        // Масштабируем изображение
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(source, 0, 0, width, height, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    private byte[] encode(BufferedImage image, String formatName) throws IOException {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            ImageIO.write(image, formatName, baos);
+            return baos.toByteArray();
+        }
+    }
+
+    /**
+     * Формат превью совпадает с оригиналом, если для него есть кодировщик, иначе - PNG
+     */
+    private String resolveFormatName(String extension) {
+        String formatName = extension.toLowerCase(Locale.ROOT);
+        if ("jpg".equals(formatName)) {
+            formatName = "jpeg";
+        }
+        return ImageIO.getImageWritersByFormatName(formatName).hasNext() ? formatName : "png";
+    }
+
+    private String getExtensions(String fileName) {
+        if (fileName == null || !fileName.contains(".")) {
+            return "";
+        }
+        return fileName.substring(fileName.lastIndexOf(".") + 1);
+    }
+}
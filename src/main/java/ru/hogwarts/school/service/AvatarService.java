@@ -1,120 +1,210 @@
 package ru.hogwarts.school.service;
 
-import org.springframework.transaction.annotation.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.AvatarImportResult;
+import ru.hogwarts.school.dto.AvatarPreview;
+import ru.hogwarts.school.dto.PreviewCacheStats;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.PreviewStatus;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarRenditionRepository;
 import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.StudentRepository;
 
-
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.awt.RenderingHints;
-
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
-
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Аватары студентов. Транзакции объявлены на уровне методов и охватывают только работу с БД:
+ * чтение загрузки, хеширование и запись файлов на диск идут до транзакции
+ */
 @Service
-@Transactional
 public class AvatarService {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarService.class);
+
     private final AvatarRepository avatarRepository;
+    private final AvatarRenditionRepository renditionRepository;
     private final StudentRepository studentRepository;
-
-    @Value("${avatar.directory.path}")
-    private String avatarsDir;
-
-    // Константа для ширины превью
-    private static final int PREVIEW_WIDTH = 100;
-    private static final int STREAM_BUFFER_SIZE = 1024;
-
-    public AvatarService(AvatarRepository avatarRepository, StudentRepository studentRepository) {
+    private final AvatarPreviewCache previewCache;
+    private final AvatarPreviewService previewService;
+    private final AvatarStorage storage;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final long maxUploadBytes;
+
+    public AvatarService(AvatarRepository avatarRepository, AvatarRenditionRepository renditionRepository,
+                         StudentRepository studentRepository, AvatarPreviewCache previewCache,
+                         AvatarPreviewService previewService, AvatarStorage storage,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${avatar.upload.max-bytes:5242880}") long maxUploadBytes) {
         this.avatarRepository = avatarRepository;
+        this.renditionRepository = renditionRepository;
         this.studentRepository = studentRepository;
+        this.previewCache = previewCache;
+        this.previewService = previewService;
+        this.storage = storage;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.maxUploadBytes = maxUploadBytes;
     }
 
     public void uploadAvatar(Long studentId, MultipartFile avatarFile) throws IOException {
-        Student student = studentRepository.findById(studentId)
-                .orElseThrow(() -> new RuntimeException("Student not found with id: " + studentId));
-
-        Path filePath = Path.of(avatarsDir, studentId + "." + getExtensions(avatarFile.getOriginalFilename()));
-        Files.createDirectories(filePath.getParent());
-        Files.deleteIfExists(filePath);
-
-        try (
-                InputStream is = avatarFile.getInputStream();
-                OutputStream os = Files.newOutputStream(filePath, CREATE_NEW);
-                BufferedInputStream bis = new BufferedInputStream(is, STREAM_BUFFER_SIZE);
-                BufferedOutputStream bos = new BufferedOutputStream(os, STREAM_BUFFER_SIZE)
-        ) {
-            bis.transferTo(bos);
-        }
-        // Генерируем превью для БД
-        byte[] previewData = generatePreviewData(filePath);
+        requireStudent(studentId);
 
-        Avatar avatar = findOrCreateAvatar(studentId);
-        avatar.setStudent(student);
-        avatar.setFilePath(filePath.toString());
-        avatar.setFileSize(avatarFile.getSize());
-        avatar.setMediaType(avatarFile.getContentType());
-        avatar.setData(previewData); // Сохраняем ПРЕВЬЮ в БД, а не оригинал
+        String contentHash;
+        try (InputStream is = avatarFile.getInputStream()) {
+            contentHash = storage.hash(is);
+        }
+        // Файл пишется только если его ещё нет на диске: повторная загрузка того же файла ничего не пишет
+        String extension = getExtensions(avatarFile.getOriginalFilename());
+        boolean created = !Files.exists(storage.resolve(contentHash, extension));
+        Path filePath;
+        try (InputStream is = avatarFile.getInputStream()) {
+            filePath = storage.store(is, contentHash, extension);
+        }
 
-        avatarRepository.save(avatar);
+        attachContent(studentId, contentHash, filePath, created, avatarFile.getSize(), avatarFile.getContentType());
     }
 
     /**
-     * Генерирует уменьшенное превью изображения для хранения в БД
+     * Загрузка аватара телом запроса без multipart: поток из сокета за один проход хешируется,
+     * проверяется по сигнатуре формата и пишется в хранилище. Превью декодируется после коммита
+     * из уже записанного файла, который в этот момент ещё лежит в page cache.
      */
-    private byte[] generatePreviewData(Path filePath) throws IOException {
-        try (
-                InputStream is = Files.newInputStream(filePath);
-                BufferedInputStream bis = new BufferedInputStream(is, STREAM_BUFFER_SIZE);
-                ByteArrayOutputStream baos = new ByteArrayOutputStream()
-        ) {
-            // Читаем оригинальное изображение
-            BufferedImage originalImage = ImageIO.read(bis);
-
-            if (originalImage == null) {
-                // Если это не изображение, возвращаем пустой массив
-                return new byte[0];
-            }
+    public void uploadAvatarStream(Long studentId, InputStream body) throws IOException {
+        // Студента проверяем до чтения тела, чтобы не писать на диск файл, который некому привязать
+        requireStudent(studentId);
 
-            // Рассчитываем высоту пропорционально ширине
-            int originalWidth = originalImage.getWidth();
-            int originalHeight = originalImage.getHeight();
+        StoredContent content = storage.storeStreaming(body, maxUploadBytes);
+        attachContent(studentId, content.contentHash(), content.filePath(), content.created(),
+                content.fileSize(), content.format().getMediaType());
+    }
 
-            // Защита от деления на ноль
-            if (originalWidth == 0) {
-                return new byte[0];
+    /**
+     * Привязывает к студенту файл, уже записанный в хранилище. Чтение файла из запроса и запись на диск
+     * идут до транзакции, поэтому соединение из пула занято только запросами к БД. Если транзакция
+     * откатится, записанный файл станет осиротевшим и будет удалён плановой сверкой каталога.
+     * Превью общее для всех аватаров с одним содержимым: при совпадении переиспользуются файл и превью.
+     * Аватары с тем же содержимым блокируются, чтобы параллельное удаление последнего из них
+     * не удалило превью, которые эта загрузка собирается переиспользовать
+     */
+    private void attachContent(Long studentId, String contentHash, Path filePath, boolean created,
+                               long fileSize, String mediaType) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            Avatar avatar = findOrCreateAvatar(studentId);
+            String previousHash = avatar.getContentHash();
+            String previousPath = avatar.getFilePath();
+            Avatar sameContent = contentHash.equals(previousHash)
+                    ? avatar
+                    : avatarRepository.findByContentHashInOrderById(List.of(contentHash)).stream()
+                    .findFirst()
+                    .orElse(null);
+            if (sameContent != null && created && !filePath.toString().equals(sameContent.getFilePath())) {
+                // То же содержимое уже лежит под другим расширением - копия не нужна
+                deleteAfterCommit(filePath);
+            }
+            if (sameContent == avatar) {
+                // Студент загрузил тот же файл повторно - ни запись, ни превью не нужны
+                return;
             }
 
-            int previewHeight = originalHeight * PREVIEW_WIDTH / originalWidth;
-
-            // Создаем превью
-            BufferedImage previewImage = new BufferedImage(
-                    PREVIEW_WIDTH,
-                    previewHeight,
-                    originalImage.getType()
-
-            );
+            Path contentPath = sameContent != null ? Path.of(sameContent.getFilePath()) : filePath;
+            // Превью нового содержимого генерируется в фоне после коммита, до этого отдаём статус PENDING
+            PreviewStatus previewStatus = sameContent != null ? sameContent.getPreviewStatus() : PreviewStatus.PENDING;
+
+            avatar.setStudent(studentRepository.getReferenceById(studentId));
+            avatar.setFilePath(contentPath.toString());
+            avatar.setFileSize(fileSize);
+            avatar.setMediaType(mediaType);
+            avatar.setContentHash(contentHash);
+            avatar.setPreviewStatus(previewStatus);
+            avatar.setUpdatedAt(Instant.now());
+
+            avatarRepository.save(avatar);
+            invalidatePreview(studentId);
+            if (sameContent == null) {
+                previewService.schedulePreview(contentHash, contentPath);
+            }
+            releaseContent(previousHash, previousPath);
+        });
+    }
 
-            // Масштабируем изображение
-            Graphics2D graphics = previewImage.createGraphics();
-            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            graphics.drawImage(originalImage, 0, 0, PREVIEW_WIDTH, previewHeight, null);
-            graphics.dispose();
+    /**
+     * Привязывает к студентам пачку файлов, уже записанных в хранилище при импорте.
+     * Студенты, их текущие аватары и статусы известного содержимого загружаются тремя запросами
+     * на всю пачку, а превью ставится в очередь один раз на каждое новое содержимое.
+     */
+    @Transactional
+    public List<AvatarImportResult> saveImportBatch(List<StoredAvatarFile> files) {
+        Set<Long> studentIds = files.stream().map(StoredAvatarFile::studentId).collect(Collectors.toSet());
+        Set<String> contentHashes = files.stream().map(StoredAvatarFile::contentHash).collect(Collectors.toSet());
+
+        Map<Long, Student> students = studentRepository.findAllById(studentIds).stream()
+                .collect(Collectors.toMap(Student::getId, Function.identity()));
+        Map<Long, Avatar> avatars = avatarRepository.findByStudentIdIn(studentIds).stream()
+                .collect(Collectors.toMap(avatar -> avatar.getStudent().getId(), Function.identity()));
+        // Известное содержимое читается с блокировкой, как и при одиночной загрузке (см. attachContent)
+        Map<String, PreviewStatus> knownContent = new HashMap<>();
+        avatarRepository.findByContentHashInOrderById(contentHashes)
+                .forEach(avatar -> knownContent.putIfAbsent(avatar.getContentHash(), avatar.getPreviewStatus()));
+
+        List<AvatarImportResult> results = new ArrayList<>();
+        List<Avatar> changedAvatars = new ArrayList<>();
+        // Прежнее содержимое (хеш -> путь), с которого снимается ссылка после сохранения
+        Map<String, String> releasedContent = new HashMap<>();
+        Map<String, Path> newContent = new LinkedHashMap<>();
+        for (StoredAvatarFile file : files) {
+            Student student = students.get(file.studentId());
+            if (student == null) {
+                results.add(AvatarImportResult.failed(file.fileName(), file.studentId(), "Student not found"));
+                continue;
+            }
+            Avatar avatar = avatars.computeIfAbsent(file.studentId(), id -> new Avatar());
+            if (file.contentHash().equals(avatar.getContentHash())) {
+                results.add(AvatarImportResult.unchanged(file.fileName(), file.studentId()));
+                continue;
+            }
+            if (avatar.getFilePath() != null) {
+                releasedContent.put(avatar.getContentHash(), avatar.getFilePath());
+            }
 
-            // Сохраняем превью в байтовый массив
-            String formatName = getExtensions(filePath.getFileName().toString());
-            ImageIO.write(previewImage, formatName, baos);
+            PreviewStatus previewStatus = knownContent.get(file.contentHash());
+            if (previewStatus == null) {
+                previewStatus = PreviewStatus.PENDING;
+                knownContent.put(file.contentHash(), previewStatus);
+                newContent.put(file.contentHash(), file.filePath());
+            }
 
-            return baos.toByteArray();
+            avatar.setStudent(student);
+            avatar.setFilePath(file.filePath().toString());
+            avatar.setFileSize(file.fileSize());
+            avatar.setMediaType(file.mediaType());
+            avatar.setContentHash(file.contentHash());
+            avatar.setPreviewStatus(previewStatus);
+            avatar.setUpdatedAt(Instant.now());
+            changedAvatars.add(avatar);
+            results.add(AvatarImportResult.imported(file.fileName(), file.studentId()));
         }
+
+        avatarRepository.saveAll(changedAvatars);
+        changedAvatars.forEach(avatar -> invalidatePreview(avatar.getStudent().getId()));
+        newContent.forEach(previewService::schedulePreview);
+        releasedContent.forEach(this::releaseContent);
+        return results;
     }
 
     public Avatar findAvatar(Long studentId) {
@@ -122,9 +212,45 @@ public class AvatarService {
                 .orElseThrow(() -> new RuntimeException("Avatar not found for student id: " + studentId));
     }
 
-    public byte[] getAvatarDataFromDatabase(Long studentId) {
+    /**
+     * Возвращает превью ширины, ближайшей к запрошенной: из кеша, а при промахе - из БД
+     * в одной read-only транзакции. Попадание в кеш соединение из пула не берёт
+     */
+    public AvatarPreview getAvatarPreview(Long studentId, Integer requestedWidth) {
+        int width = previewService.resolveWidth(requestedWidth);
+        AvatarPreview cached = previewCache.get(studentId, width);
+        if (cached != null) {
+            return cached;
+        }
+        AvatarPreview preview = readOnlyTransactionTemplate.execute(tx -> loadPreview(studentId, width));
+        if (!preview.isEmpty()) {
+            previewCache.put(studentId, width, preview);
+        }
+        return preview;
+    }
+
+    private AvatarPreview loadPreview(Long studentId, int width) {
         Avatar avatar = findAvatar(studentId);
-        return avatar.getData(); // Возвращаем превью из БД
+        // У аватаров, загруженных до фоновой генерации, статуса нет - их превью уже готово
+        PreviewStatus status = avatar.getPreviewStatus() != null ? avatar.getPreviewStatus() : PreviewStatus.READY;
+        if (status != PreviewStatus.READY) {
+            return new AvatarPreview(null, avatar.getMediaType(), status);
+        }
+
+        String contentHash = avatar.getContentHash();
+        if (contentHash == null) {
+            // Старый аватар без файла и без превью
+            return new AvatarPreview(null, avatar.getMediaType(), status);
+        }
+        return renditionRepository
+                .findFirstByContentHashAndWidthGreaterThanEqualOrderByWidthAsc(contentHash, width)
+                .or(() -> renditionRepository.findFirstByContentHashOrderByWidthDesc(contentHash))
+                .map(rendition -> new AvatarPreview(rendition.getData(), rendition.getMediaType(), status))
+                .orElseGet(() -> new AvatarPreview(null, avatar.getMediaType(), status));
+    }
+
+    public PreviewCacheStats getPreviewCacheStats() {
+        return previewCache.getStats();
     }
 
     public Avatar getAvatarFromDisk(Long studentId) throws IOException {
@@ -138,12 +264,79 @@ public class AvatarService {
         return avatar;
     }
 
+    @Transactional
     public void deleteAvatar(Long studentId) throws IOException {
         Avatar avatar = findAvatar(studentId);
-        Path filePath = Path.of(avatar.getFilePath());
 
-        Files.deleteIfExists(filePath);
         avatarRepository.delete(avatar);
+        invalidatePreview(studentId);
+        releaseContent(avatar.getContentHash(), avatar.getFilePath());
+    }
+
+    /**
+     * Снимает ссылку на содержимое. Файл и превью удаляются, только когда на содержимое
+     * не ссылается больше ни один аватар; файл - после коммита, чтобы откат не оставил строки без файла,
+     * и только если его не переиспользовали в пределах grace-периода (см. {@link AvatarStorage#deleteUnused})
+     */
+    private void releaseContent(String contentHash, String filePath) {
+        if (filePath == null) {
+            return;
+        }
+        // Запрос сам сбросит в БД изменения текущей транзакции, поэтому счётчик уже актуален
+        if (contentHash != null && avatarRepository.countByContentHash(contentHash) > 0) {
+            return;
+        }
+        if (contentHash != null) {
+            renditionRepository.deleteByContentHash(contentHash);
+        }
+        Path path = Path.of(filePath);
+        runAfterCommit(() -> {
+            try {
+                if (!storage.deleteUnused(path)) {
+                    logger.debug("Avatar file {} was used recently, leaving it to the scheduled storage sweep", path);
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to delete avatar file {}", path, e);
+            }
+        });
+    }
+
+    private void deleteAfterCommit(Path path) {
+        runAfterCommit(() -> {
+            try {
+                storage.delete(path);
+            } catch (IOException e) {
+                logger.warn("Failed to delete avatar file {}", path, e);
+            }
+        });
+    }
+
+    /**
+     * Сбрасывает превью сразу и ещё раз после коммита: иначе параллельный запрос
+     * может успеть положить в кеш старые данные до завершения транзакции
+     */
+    private void invalidatePreview(Long studentId) {
+        previewCache.invalidate(studentId);
+        runAfterCommit(() -> previewCache.invalidate(studentId));
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void requireStudent(Long studentId) {
+        if (!studentRepository.existsById(studentId)) {
+            throw new RuntimeException("Student not found with id: " + studentId);
+        }
     }
 
     private Avatar findOrCreateAvatar(Long studentId) {
@@ -0,0 +1,247 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Хранилище оригиналов аватаров, адресуемое по содержимому: имя файла - SHA-256 его байтов.
+ * Одинаковые файлы разных студентов лежат на диске в одном экземпляре.
+ * Имя файла: {@code <avatar.directory.path>/ab/cd/abcd....<расширение>}.
+ * <p>
+ * Загрузка уже существующего содержимого обновляет время изменения файла, а удаляются только файлы,
+ * не использованные дольше grace-периода: так параллельная загрузка того же содержимого не останется
+ * без файла, если последний ссылавшийся на него аватар удаляют в тот же момент.
+ */
+@Component
+public class AvatarStorage {
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    // Каталог для загрузок, хеш которых ещё неизвестен; на той же файловой системе, что и шарды
+    private static final String INCOMING_DIR = ".incoming";
+
+    private final Path avatarsDir;
+    private final Duration gracePeriod;
+
+    @Autowired
+    public AvatarStorage(@Value("${avatar.directory.path}") String avatarsDir,
+                         @Value("${avatar.storage.grace-period:PT1H}") Duration gracePeriod) {
+        this.avatarsDir = Path.of(avatarsDir);
+        this.gracePeriod = gracePeriod;
+    }
+
+    AvatarStorage(String avatarsDir) {
+        this(avatarsDir, Duration.ofHours(1));
+    }
+
+    public String hash(InputStream inputStream) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public String hash(Path path) throws IOException {
+        try (InputStream is = Files.newInputStream(path)) {
+            return hash(is);
+        }
+    }
+
+    /**
+     * Файлы раскладываются по двухуровневым подкаталогам из первых символов хеша (ab/cd/abcd...),
+     * чтобы в одном каталоге не было сотен тысяч файлов
+     */
+    public Path resolve(String contentHash, String extension) {
+        String fileName = extension.isEmpty() ? contentHash : contentHash + "." + extension;
+        return avatarsDir
+                .resolve(contentHash.substring(0, 2))
+                .resolve(contentHash.substring(2, 4))
+                .resolve(fileName);
+    }
+
+    public Path getAvatarsDir() {
+        return avatarsDir;
+    }
+
+    public Duration getGracePeriod() {
+        return gracePeriod;
+    }
+
+    /**
+     * Файл использовался (записан или загружен повторно) в пределах grace-периода
+     */
+    public boolean isRecentlyUsed(Path filePath) throws IOException {
+        return Files.getLastModifiedTime(filePath).toInstant().isAfter(Instant.now().minus(gracePeriod));
+    }
+
+    /**
+     * Записывает файл, только если файла с таким содержимым ещё нет на диске.
+     * Запись идёт во временный файл рядом с целевым, после fsync он атомарно переименовывается,
+     * поэтому под итоговым именем никогда не бывает недописанного файла.
+     */
+    public Path store(InputStream inputStream, String contentHash, String extension) throws IOException {
+        Path filePath = resolve(contentHash, extension);
+        if (reuse(filePath)) {
+            return filePath;
+        }
+        Path directory = filePath.getParent();
+        Files.createDirectories(directory);
+
+        Path tempFile = Files.createTempFile(directory, contentHash, TEMP_FILE_SUFFIX);
+        try {
+            writeAndSync(inputStream, tempFile, Long.MAX_VALUE);
+            // Если тот же файл параллельно записал другой запрос, rename просто заменит его тем же содержимым
+            Files.move(tempFile, filePath, ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        syncDirectory(directory);
+        return filePath;
+    }
+
+    /**
+     * Однопроходная запись загрузки: байты из запроса одновременно хешируются и пишутся во временный файл,
+     * а сигнатура формата проверяется по первым байтам до начала записи. Имя файла известно только
+     * в конце потока, поэтому временный файл лежит в отдельном каталоге и затем переименовывается в шард.
+     *
+     * @throws IllegalArgumentException если содержимое не является изображением поддерживаемого формата
+     * @throws AvatarTooLargeException если поток длиннее {@code maxBytes}
+     */
+    public StoredContent storeStreaming(InputStream inputStream, long maxBytes) throws IOException {
+        MessageDigest digest = newDigest();
+        DigestInputStream digestStream = new DigestInputStream(inputStream, digest);
+        byte[] header = digestStream.readNBytes(AvatarImageFormat.HEADER_LENGTH);
+        AvatarImageFormat format = AvatarImageFormat.detect(header)
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported image format"));
+
+        Path incomingDir = avatarsDir.resolve(INCOMING_DIR);
+        Files.createDirectories(incomingDir);
+        Path tempFile = Files.createTempFile(incomingDir, "upload-", TEMP_FILE_SUFFIX);
+        try {
+            // Заголовок уже прошёл через дайджест, дописываем его в файл перед остатком потока
+            long size = writeAndSync(new SequenceInputStream(new ByteArrayInputStream(header), digestStream),
+                    tempFile, maxBytes);
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            Path filePath = resolve(contentHash, format.getExtension());
+            if (reuse(filePath)) {
+                return new StoredContent(contentHash, filePath, size, format, false);
+            }
+            Path directory = filePath.getParent();
+            Files.createDirectories(directory);
+            Files.move(tempFile, filePath, ATOMIC_MOVE);
+            syncDirectory(directory);
+            return new StoredContent(contentHash, filePath, size, format, true);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Отмечает существующий файл как используемый. {@code false} - файла нет, его нужно записать
+     */
+    private boolean reuse(Path filePath) throws IOException {
+        try {
+            Files.setLastModifiedTime(filePath, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    public boolean isTempFile(Path path) {
+        return path.getFileName().toString().endsWith(TEMP_FILE_SUFFIX);
+    }
+
+    private long writeAndSync(InputStream inputStream, Path target, long maxBytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        long written = 0;
+        try (
+                ReadableByteChannel in = Channels.newChannel(inputStream);
+                FileChannel out = FileChannel.open(target, WRITE)
+        ) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                written += read;
+                if (written > maxBytes) {
+                    throw new AvatarTooLargeException(maxBytes);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+            out.force(true);
+        }
+        return written;
+    }
+
+    /**
+     * fsync каталога фиксирует сам rename. На Windows каталог так открыть нельзя - там шаг пропускается
+     */
+    private void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Файловая система не поддерживает fsync каталога
+        }
+    }
+
+    public void delete(Path filePath) throws IOException {
+        Files.deleteIfExists(filePath);
+    }
+
+    /**
+     * Удаляет файл содержимого, на которое больше не ссылается ни один аватар. Недавно использованный файл
+     * остаётся: его могла только что переиспользовать загрузка, ещё не закоммитившая свой аватар.
+     * Такой файл удалит плановая сверка каталога ({@link AvatarStorageReconciler}, {@code avatar.storage.sweep-enabled}),
+     * если ссылок на него так и не появится
+     *
+     * @return {@code true}, если файл удалён
+     */
+    public boolean deleteUnused(Path filePath) throws IOException {
+        try {
+            if (isRecentlyUsed(filePath)) {
+                return false;
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        return Files.deleteIfExists(filePath);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
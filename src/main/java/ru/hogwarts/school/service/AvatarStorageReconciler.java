@@ -0,0 +1,269 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.repository.AvatarRenditionRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Сверяет каталог аватаров с БД при старте приложения ({@code avatar.storage.reconcile-on-startup}):
+ * <ul>
+ *     <li>удаляет недописанные временные файлы, оставшиеся после падения;</li>
+ *     <li>находит файлы, на содержимое которых не ссылается ни один аватар. По умолчанию они только попадают
+ *     в лог, удаление включается {@code avatar.storage.sweep-enabled};</li>
+ *     <li>находит записи аватаров, файлы которых пропали с диска. По умолчанию они только попадают в лог,
+ *     удаление вместе с осиротевшими превью включается {@code avatar.storage.reconcile.delete-missing-rows}.</li>
+ * </ul>
+ * Файлы, использованные в пределах grace-периода ({@code avatar.storage.grace-period}), не трогаются:
+ * их может прямо сейчас записывать или переиспользовать другой экземпляр приложения, ещё не закоммитивший
+ * свою транзакцию.
+ * <p>
+ * Пропажа файлов чаще означает неверный {@code avatar.directory.path} (другой рабочий каталог, не смонтированный
+ * том), чем реальную потерю, а удаление записей необратимо. Поэтому записи не удаляются вовсе, если каталога нет
+ * или без файла осталась больше чем доля {@code avatar.storage.reconcile.max-missing-ratio} аватаров.
+ * Обратная ошибка - пустая или чужая БД - сделала бы осиротевшими все файлы, поэтому файлы не удаляются,
+ * если таблица аватаров пуста или без ссылок осталась больше той же доли файлов.
+ * <p>
+ * Осиротевшие файлы, кроме того, проверяются по расписанию раз в {@code avatar.storage.sweep-interval}:
+ * файл, который освободили в пределах grace-периода после его использования (замена или удаление только что
+ * загруженного аватара), иначе пролежал бы на диске до следующего перезапуска.
+ */
+@Component
+@Order(2)
+public class AvatarStorageReconciler implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarStorageReconciler.class);
+
+    // Глубина файла в каталоге шардов: ab/cd/<файл>
+    private static final int SHARD_FILE_DEPTH = 3;
+    private static final int HASH_BATCH_SIZE = 500;
+
+    private final AvatarStorage storage;
+    private final AvatarRepository avatarRepository;
+    private final AvatarRenditionRepository renditionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean reconcileOnStartup;
+    private final boolean sweepEnabled;
+    private final boolean deleteMissingRows;
+    private final double maxMissingRatio;
+
+    public AvatarStorageReconciler(AvatarStorage storage,
+                                   AvatarRepository avatarRepository,
+                                   AvatarRenditionRepository renditionRepository,
+                                   JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${avatar.storage.reconcile-on-startup:false}") boolean reconcileOnStartup,
+                                   @Value("${avatar.storage.sweep-enabled:false}") boolean sweepEnabled,
+                                   @Value("${avatar.storage.reconcile.delete-missing-rows:false}") boolean deleteMissingRows,
+                                   @Value("${avatar.storage.reconcile.max-missing-ratio:0.1}") double maxMissingRatio) {
+        this.storage = storage;
+        this.avatarRepository = avatarRepository;
+        this.renditionRepository = renditionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.reconcileOnStartup = reconcileOnStartup;
+        this.sweepEnabled = sweepEnabled;
+        this.deleteMissingRows = deleteMissingRows;
+        this.maxMissingRatio = maxMissingRatio;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!reconcileOnStartup) {
+            return;
+        }
+        removeOrphanedFiles();
+        removeOrphanedRows();
+    }
+
+    /**
+     * Первый запуск - через интервал после старта: сразу после старта файлы уже проверила сверка
+     */
+    @Scheduled(initialDelayString = "${avatar.storage.sweep-interval:2h}",
+            fixedDelayString = "${avatar.storage.sweep-interval:2h}")
+    public void sweepOrphanedFiles() {
+        try {
+            removeOrphanedFiles();
+        } catch (IOException e) {
+            logger.warn("Failed to sweep orphaned avatar files in {}", storage.getAvatarsDir(), e);
+        }
+    }
+
+    /**
+     * @return число удалённых файлов
+     */
+    int removeOrphanedFiles() throws IOException {
+        Path avatarsDir = storage.getAvatarsDir();
+        if (!Files.isDirectory(avatarsDir)) {
+            return 0;
+        }
+        Instant threshold = Instant.now().minus(storage.getGracePeriod());
+        List<Path> tempFiles;
+        List<Path> contentFiles;
+        try (Stream<Path> files = Files.walk(avatarsDir, SHARD_FILE_DEPTH)) {
+            // Файлы в корне каталога - старая раскладка без шардов, на них ссылаются по file_path.
+            // Временные файлы потоковых загрузок лежат вне шардов, их подбираем на любой глубине
+            Map<Boolean, List<Path>> byTemp = files
+                    .filter(path -> avatarsDir.relativize(path).getNameCount() == SHARD_FILE_DEPTH
+                            || storage.isTempFile(path))
+                    .filter(Files::isRegularFile)
+                    .collect(Collectors.partitioningBy(storage::isTempFile));
+            tempFiles = byTemp.get(true);
+            contentFiles = byTemp.get(false);
+        }
+
+        // Недописанный временный файл не зависит от БД: на него не ссылается ни одна запись
+        int removed = 0;
+        for (Path path : tempFiles) {
+            if (isStale(path, threshold)) {
+                Files.deleteIfExists(path);
+                removed++;
+            }
+        }
+
+        List<Path> orphaned = findOrphaned(contentFiles, threshold);
+        if (!orphaned.isEmpty() && canRemoveOrphanedFiles(orphaned.size(), contentFiles.size())) {
+            for (Path path : orphaned) {
+                // Файл могли переиспользовать после проверки: reuse() обновляет время изменения
+                if (isStale(path, threshold)) {
+                    Files.deleteIfExists(path);
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            logger.info("Removed {} orphaned avatar files", removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Файлы старше grace-периода, на содержимое которых не ссылается ни один аватар. Хеши проверяются
+     * пачками по {@value #HASH_BATCH_SIZE} одним запросом
+     */
+    private List<Path> findOrphaned(List<Path> contentFiles, Instant threshold) throws IOException {
+        List<Path> stale = new ArrayList<>();
+        for (Path path : contentFiles) {
+            if (isStale(path, threshold)) {
+                stale.add(path);
+            }
+        }
+        List<Path> orphaned = new ArrayList<>();
+        for (int from = 0; from < stale.size(); from += HASH_BATCH_SIZE) {
+            List<Path> batch = stale.subList(from, Math.min(from + HASH_BATCH_SIZE, stale.size()));
+            Set<String> used = avatarRepository.findExistingContentHashes(
+                    batch.stream().map(AvatarStorageReconciler::contentHashOf).collect(Collectors.toSet()));
+            batch.stream()
+                    .filter(path -> !used.contains(contentHashOf(path)))
+                    .forEach(orphaned::add);
+        }
+        return orphaned;
+    }
+
+    /**
+     * Пустая таблица аватаров или массовое «сиротство» файлов скорее означает чужую или пустую БД, чем реальный
+     * мусор, а удаление оригиналов необратимо - в этих случаях файлы только попадают в лог
+     */
+    private boolean canRemoveOrphanedFiles(int orphaned, int total) {
+        Path avatarsDir = storage.getAvatarsDir().toAbsolutePath();
+        if (!sweepEnabled) {
+            logger.warn("{} of {} avatar files in {} are not referenced by any avatar; enable avatar.storage"
+                    + ".sweep-enabled to remove them", orphaned, total, avatarsDir);
+            return false;
+        }
+        if (avatarRepository.count() == 0) {
+            logger.error("Avatar table is empty but {} contains {} avatar files; check the datasource, "
+                    + "no files were removed", avatarsDir, total);
+            return false;
+        }
+        if (orphaned > total * maxMissingRatio) {
+            logger.error("{} of {} avatar files in {} are not referenced by any avatar, which exceeds avatar.storage"
+                            + ".reconcile.max-missing-ratio={}; check the datasource, no files were removed",
+                    orphaned, total, avatarsDir, maxMissingRatio);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isStale(Path path, Instant threshold) throws IOException {
+        try {
+            return !Files.getLastModifiedTime(path).toInstant().isAfter(threshold);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return число удалённых записей
+     */
+    int removeOrphanedRows() {
+        Path avatarsDir = storage.getAvatarsDir();
+        if (!Files.isDirectory(avatarsDir)) {
+            logger.warn("Avatar directory {} does not exist, skipping the check of avatar records",
+                    avatarsDir.toAbsolutePath());
+            return 0;
+        }
+        List<AvatarFile> avatars = jdbcTemplate.query(
+                "SELECT id, file_path, content_hash FROM avatars",
+                (rs, rowNum) -> new AvatarFile(rs.getLong("id"), rs.getString("file_path"), rs.getString("content_hash")));
+        List<AvatarFile> missing = avatars.stream()
+                .filter(avatar -> avatar.filePath() == null || !Files.exists(Path.of(avatar.filePath())))
+                .toList();
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        missing.forEach(avatar -> logger.warn("Avatar {} file {} is missing", avatar.id(), avatar.filePath()));
+
+        if (!deleteMissingRows) {
+            logger.warn("{} of {} avatar records have no file; enable avatar.storage.reconcile.delete-missing-rows "
+                    + "to remove them", missing.size(), avatars.size());
+            return 0;
+        }
+        if (missing.size() > avatars.size() * maxMissingRatio) {
+            logger.error("{} of {} avatar records have no file in {}, which exceeds avatar.storage.reconcile"
+                            + ".max-missing-ratio={}; check avatar.directory.path, no records were removed",
+                    missing.size(), avatars.size(), avatarsDir.toAbsolutePath(), maxMissingRatio);
+            return 0;
+        }
+
+        for (AvatarFile avatar : missing) {
+            transactionTemplate.executeWithoutResult(tx -> {
+                avatarRepository.deleteById(avatar.id());
+                if (avatar.contentHash() != null && avatarRepository.countByContentHash(avatar.contentHash()) == 0) {
+                    renditionRepository.deleteByContentHash(avatar.contentHash());
+                }
+            });
+        }
+        logger.info("Removed {} avatar records without files", missing.size());
+        return missing.size();
+    }
+
+    private static String contentHashOf(Path path) {
+        String fileName = path.getFileName().toString();
+        int dot = fileName.indexOf('.');
+        return dot < 0 ? fileName : fileName.substring(0, dot);
+    }
+
+    private record AvatarFile(long id, String filePath, String contentHash) {
+    }
+}
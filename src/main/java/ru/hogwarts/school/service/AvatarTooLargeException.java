@@ -0,0 +1,17 @@
+package ru.hogwarts.school.service;
+
+/**
+ * Загружаемый файл аватара длиннее допустимого; контроллер отвечает на это 413
+ */
+public class AvatarTooLargeException extends RuntimeException {
+    private final long maxBytes;
+
+    public AvatarTooLargeException(long maxBytes) {
+        super("Avatar is larger than " + maxBytes + " bytes");
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,134 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.dto.FacultyWithoutStudents;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.repository.FacultyRepository;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process кеш факультетов. Факультетов мало и они почти не меняются, поэтому кешируется весь набор целиком
+ * вместе с индексами по названию и цвету без учёта регистра: поиск по ним, в том числе неудачный, обходится без SQL.
+ * Снимок загружается при первом чтении и сбрасывается при любом изменении факультетов.
+ * <p>
+ * Кеш локален для экземпляра приложения: если экземпляров несколько, его нужно выключить
+ * ({@code faculty.cache.enabled=false}), иначе изменения с другого экземпляра не будут видны.
+ */
+@Component
+public class FacultyCache {
+    private final FacultyRepository facultyRepository;
+    private final boolean enabled;
+
+    private volatile Snapshot snapshot;
+    // Номер сброса: снимок, загруженный до сброса, не публикуется
+    private long generation;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public FacultyCache(FacultyRepository facultyRepository,
+                        @Value("${faculty.cache.enabled:true}") boolean enabled) {
+        this.facultyRepository = facultyRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Collection<FacultyWithoutStudents> findAll() {
+        return snapshot().all();
+    }
+
+    public FacultyWithoutStudents findById(long id) {
+        return snapshot().byId().get(id);
+    }
+
+    public boolean contains(long id) {
+        return snapshot().byId().containsKey(id);
+    }
+
+    public Collection<FacultyWithoutStudents> findByColor(String color) {
+        return snapshot().byColor().getOrDefault(normalize(color), List.of());
+    }
+
+    /**
+     * Факультеты, у которых название или цвет совпадает с запросом, в порядке id и без повторов
+     */
+    public Collection<FacultyWithoutStudents> findByNameOrColor(String query) {
+        Snapshot current = snapshot();
+        String key = normalize(query);
+        Set<FacultyWithoutStudents> result = new TreeSet<>(Comparator.comparingLong(FacultyWithoutStudents::id));
+        result.addAll(current.byName().getOrDefault(key, List.of()));
+        result.addAll(current.byColor().getOrDefault(key, List.of()));
+        return List.copyOf(result);
+    }
+
+    /**
+     * Сбрасывает снимок. Вызывается после коммита изменения, следующее чтение загрузит факультеты заново
+     */
+    public void invalidate() {
+        lock.lock();
+        try {
+            generation++;
+            snapshot = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        long loadGeneration;
+        lock.lock();
+        try {
+            loadGeneration = generation;
+        } finally {
+            lock.unlock();
+        }
+        // Запрос выполняется без блокировки: факультетов мало, а повторная загрузка при гонке безвредна
+        Snapshot loaded = Snapshot.of(facultyRepository.findAllSummaries());
+        lock.lock();
+        try {
+            if (generation == loadGeneration) {
+                snapshot = loaded;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return loaded;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : Faculty.normalize(value);
+    }
+
+    private record Snapshot(
+            List<FacultyWithoutStudents> all,
+            Map<Long, FacultyWithoutStudents> byId,
+            Map<String, List<FacultyWithoutStudents>> byName,
+            Map<String, List<FacultyWithoutStudents>> byColor
+    ) {
+        static Snapshot of(List<FacultyWithoutStudents> faculties) {
+            Map<Long, FacultyWithoutStudents> byId = new HashMap<>();
+            Map<String, List<FacultyWithoutStudents>> byName = new HashMap<>();
+            Map<String, List<FacultyWithoutStudents>> byColor = new HashMap<>();
+            for (FacultyWithoutStudents faculty : faculties) {
+                byId.put(faculty.id(), faculty);
+                if (faculty.name() != null) {
+                    byName.computeIfAbsent(normalize(faculty.name()), key -> new ArrayList<>()).add(faculty);
+                }
+                if (faculty.color() != null) {
+                    byColor.computeIfAbsent(normalize(faculty.color()), key -> new ArrayList<>()).add(faculty);
+                }
+            }
+            byName.replaceAll((key, list) -> List.copyOf(list));
+            byColor.replaceAll((key, list) -> List.copyOf(list));
+            return new Snapshot(List.copyOf(faculties), Map.copyOf(byId), Map.copyOf(byName), Map.copyOf(byColor));
+        }
+    }
+}
@@ -1,62 +1,140 @@
 package ru.hogwarts.school.service;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.FacultyWithoutStudents;
+import ru.hogwarts.school.dto.KeysetPage;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+import ru.hogwarts.school.mapper.FacultyMapper;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class FacultyService {
     private final FacultyRepository facultyRepository;
     private final StudentRepository studentRepository;
+    private final FacultyCache facultyCache;
+    private final FacultyMapper facultyMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
-    public FacultyService(FacultyRepository facultyRepository, StudentRepository studentRepository) {
+    public FacultyService(FacultyRepository facultyRepository, StudentRepository studentRepository,
+                          FacultyCache facultyCache, FacultyMapper facultyMapper,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${pagination.default-size:50}") int defaultPageSize,
+                          @Value("${pagination.max-size:500}") int maxPageSize) {
         this.facultyRepository = facultyRepository;
         this.studentRepository = studentRepository;
+        this.facultyCache = facultyCache;
+        this.facultyMapper = facultyMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     public Faculty addFaculty(Faculty faculty) {
-        return facultyRepository.save(faculty);
+        Faculty savedFaculty = facultyRepository.save(faculty);
+        facultyCache.invalidate();
+        return savedFaculty;
     }
 
     public Faculty getFaculty(long id) {
-
-        return facultyRepository.findById(id).orElse(null);
+        // Несуществующий факультет отсекается по кешу, без запроса в БД
+        if (facultyCache.isEnabled() && !facultyCache.contains(id)) {
+            return null;
+        }
+        return facultyRepository.findWithStudentsById(id).orElse(null);
     }
 
     public Faculty updateFaculty(long id, Faculty faculty) {
-        return facultyRepository.findById(id)
+        // Чтение и изменение - одна транзакция: факультет остаётся managed, и его студенты, загруженные
+        // вместе с ним для ответа, не теряются (save вне транзакции сделал бы merge в копию с ленивой коллекцией)
+        Faculty updatedFaculty = transactionTemplate.execute(tx -> facultyRepository.findWithStudentsById(id)
                 .map(existingFaculty -> {
                     existingFaculty.setName(faculty.getName());
                     existingFaculty.setColor(faculty.getColor());
-                    return facultyRepository.save(existingFaculty);
+                    return existingFaculty;
                 })
-                .orElse(null);
+                .orElse(null));
+        if (updatedFaculty != null) {
+            facultyCache.invalidate();
+        }
+        return updatedFaculty;
     }
 
-
     public void removeFaculty(long id) {
         facultyRepository.deleteById(id);
+        facultyCache.invalidate();
     }
 
-    public Collection<Faculty> getAllFaculties() {
-        return facultyRepository.findAll();
+    public Collection<FacultyWithoutStudents> getAllFaculties() {
+        if (facultyCache.isEnabled()) {
+            return facultyCache.findAll();
+        }
+        return facultyRepository.findAllSummaries();
+    }
 
+    /**
+     * Страница факультетов с id больше {@code afterId}. Запрашивается на одну запись больше размера страницы,
+     * чтобы без отдельного count узнать, есть ли следующая
+     */
+    public KeysetPage<FacultyWithoutStudents> getFacultiesPage(Long afterId, Integer size) {
+        int pageSize = resolvePageSize(size);
+        List<FacultyWithoutStudents> rows = facultyRepository.findPageAfter(
+                afterId != null ? afterId : 0L, Limit.of(pageSize + 1));
+        if (rows.size() <= pageSize) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<FacultyWithoutStudents> page = rows.subList(0, pageSize);
+        return new KeysetPage<>(page, page.get(pageSize - 1).id());
     }
 
-    public Collection<Faculty> getFacultyByColor(String color) {
-        return facultyRepository.findByColorIgnoreCase(color);
+    /**
+     * Передаёт все факультеты в {@code action} по одному, читая их курсором. Строки сразу проецируются в DTO
+     * и не попадают в persistence context, поэтому расход памяти не зависит от размера таблицы
+     */
+    @Transactional(readOnly = true)
+    public void forEachFaculty(Consumer<FacultyWithoutStudents> action) {
+        try (Stream<FacultyWithoutStudents> rows = facultyRepository.streamAllSummaries()) {
+            rows.forEach(action);
+        }
     }
 
-    public Collection<Faculty> getFacultiesByNameOrColor(String query) {
-        return facultyRepository.findByNameIgnoreCaseOrColorIgnoreCase(query, query);
+    public Collection<FacultyWithoutStudents> getFacultyByColor(String color) {
+        if (facultyCache.isEnabled()) {
+            return facultyCache.findByColor(color);
+        }
+        return facultyRepository.findByColorNormalized(Faculty.normalize(color));
     }
 
-    public List<Student> getStudentsByFacultyId(Long facultyId) {
+    public Collection<FacultyWithoutStudents> getFacultiesByNameOrColor(String query) {
+        if (facultyCache.isEnabled()) {
+            return facultyCache.findByNameOrColor(query);
+        }
+        String key = Faculty.normalize(query);
+        return facultyRepository.findByNameNormalizedOrColorNormalized(key, key).stream()
+                .map(facultyMapper::toFacultyWithoutStudents)
+                .toList();
+    }
+
+    public List<StudentWithoutFaculty> getStudentsByFacultyId(Long facultyId) {
         return studentRepository.findByFacultyId(facultyId);
     }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
+    }
 }
@@ -0,0 +1,173 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.AvatarRendition;
+import ru.hogwarts.school.repository.AvatarRenditionRepository;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Приводит аватары, сохранённые старыми версиями приложения, к хранилищу по содержимому:
+ * <ol>
+ *     <li>вычисляет contentHash по файлу на диске для аватаров, у которых его нет;</li>
+ *     <li>переносит превью из колонки avatars.data в таблицу avatar_renditions;</li>
+ *     <li>перепривязывает превью, сохранённые по avatar_id, к contentHash.</li>
+ * </ol>
+ * Каждый аватар обрабатывается в своей транзакции, поэтому повторный запуск продолжает
+ * с того места, где остановился предыдущий. Шаги, для которых в схеме нет старых колонок, пропускаются.
+ */
+@Component
+@Order(1)
+public class LegacyAvatarMigration implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(LegacyAvatarMigration.class);
+
+    // Ширина, с которой превью генерировались до появления набора превью
+    private static final int LEGACY_PREVIEW_WIDTH = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AvatarRenditionRepository renditionRepository;
+    private final AvatarStorage storage;
+
+    public LegacyAvatarMigration(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 AvatarRenditionRepository renditionRepository,
+                                 AvatarStorage storage) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.renditionRepository = renditionRepository;
+        this.storage = storage;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        backfillContentHashes();
+        moveLegacyPreviews();
+        relinkRenditions();
+    }
+
+    private void backfillContentHashes() {
+        List<Long> avatarIds = jdbcTemplate.queryForList(
+                "SELECT id FROM avatars WHERE content_hash IS NULL AND file_path IS NOT NULL", Long.class);
+        if (avatarIds.isEmpty()) {
+            return;
+        }
+
+        logger.info("Computing content hashes for {} legacy avatars", avatarIds.size());
+        for (Long avatarId : avatarIds) {
+            String filePath = jdbcTemplate.queryForObject("SELECT file_path FROM avatars WHERE id = ?", String.class, avatarId);
+            Path path = Path.of(filePath);
+            if (!Files.exists(path)) {
+                logger.warn("Avatar {} file {} is missing, content hash not computed", avatarId, path);
+                continue;
+            }
+            try {
+                jdbcTemplate.update("UPDATE avatars SET content_hash = ? WHERE id = ?", storage.hash(path), avatarId);
+            } catch (IOException e) {
+                logger.warn("Cannot hash avatar {} file {}", avatarId, path, e);
+            }
+        }
+    }
+
+    private void moveLegacyPreviews() {
+        List<Long> avatarIds;
+        try {
+            avatarIds = jdbcTemplate.queryForList(
+                    "SELECT id FROM avatars WHERE data IS NOT NULL AND content_hash IS NOT NULL", Long.class);
+        } catch (DataAccessException e) {
+            // Колонки data нет - схема создана уже без неё, переносить нечего
+            logger.debug("No legacy avatars.data column, skipping preview migration: {}", e.getMessage());
+            return;
+        }
+        if (avatarIds.isEmpty()) {
+            return;
+        }
+
+        logger.info("Moving {} legacy avatar previews to avatar_renditions", avatarIds.size());
+        avatarIds.forEach(avatarId -> transactionTemplate.executeWithoutResult(tx -> moveLegacyPreview(avatarId)));
+    }
+
+    private void moveLegacyPreview(Long avatarId) {
+        LegacyPreview legacy = jdbcTemplate.queryForObject(
+                "SELECT content_hash, media_type, data FROM avatars WHERE id = ?",
+                (rs, rowNum) -> new LegacyPreview(rs.getString("content_hash"), rs.getString("media_type"),
+                        readBlob(rs.getBlob("data"))),
+                avatarId);
+
+        if (legacy != null && legacy.data() != null && legacy.data().length > 0
+                && !renditionRepository.existsByContentHash(legacy.contentHash())) {
+            renditionRepository.save(toRendition(legacy));
+        }
+        jdbcTemplate.update(
+                "UPDATE avatars SET data = NULL, preview_status = COALESCE(preview_status, 'READY') WHERE id = ?",
+                avatarId);
+    }
+
+    private void relinkRenditions() {
+        try {
+            int relinked = jdbcTemplate.update("UPDATE avatar_renditions SET content_hash = "
+                    + "(SELECT a.content_hash FROM avatars a WHERE a.id = avatar_renditions.avatar_id), avatar_id = NULL "
+                    + "WHERE content_hash IS NULL AND avatar_id IS NOT NULL");
+            if (relinked > 0) {
+                logger.info("Relinked {} avatar renditions to content hashes", relinked);
+            }
+        } catch (DataAccessException e) {
+            // Колонки avatar_id нет - превью сразу сохранялись по contentHash
+            logger.debug("No legacy avatar_renditions.avatar_id column, skipping relink: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Размеры превью читаются из заголовка изображения; если его не разобрать - считаем, что это 100px
+     */
+    private AvatarRendition toRendition(LegacyPreview legacy) {
+        int width = LEGACY_PREVIEW_WIDTH;
+        int height = LEGACY_PREVIEW_WIDTH;
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(legacy.data()))) {
+            Iterator<ImageReader> readers = iis != null ? ImageIO.getImageReaders(iis) : null;
+            if (readers != null && readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(iis, true, true);
+                    width = reader.getWidth(0);
+                    height = reader.getHeight(0);
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Cannot read legacy preview dimensions: {}", e.getMessage());
+        }
+        AvatarRendition rendition = new AvatarRendition(width, height, legacy.mediaType(), legacy.data());
+        rendition.setContentHash(legacy.contentHash());
+        return rendition;
+    }
+
+    private static byte[] readBlob(Blob blob) throws SQLException {
+        if (blob == null) {
+            return null;
+        }
+        return blob.getBytes(1, (int) blob.length());
+    }
+
+    private record LegacyPreview(String contentHash, String mediaType, byte[] data) {
+    }
+}
@@ -0,0 +1,31 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import ru.hogwarts.school.dto.FacultyWithoutStudents;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.repository.ReactiveFacultyRepository;
+
+/**
+ * Неблокирующие чтения факультетов для /reactive/faculty
+ */
+@Service
+public class ReactiveFacultyService {
+    private final ReactiveFacultyRepository facultyRepository;
+
+    public ReactiveFacultyService(ReactiveFacultyRepository facultyRepository) {
+        this.facultyRepository = facultyRepository;
+    }
+
+    public Flux<FacultyWithoutStudents> getAllFaculties() {
+        return facultyRepository.findAll();
+    }
+
+    public Flux<FacultyWithoutStudents> getFacultyByColor(String color) {
+        return facultyRepository.findByColorNormalized(Faculty.normalize(color));
+    }
+
+    public Flux<FacultyWithoutStudents> getFacultiesByNameOrColor(String query) {
+        return facultyRepository.findByNameOrColorNormalized(Faculty.normalize(query));
+    }
+}
@@ -0,0 +1,51 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+import ru.hogwarts.school.repository.ReactiveStudentRepository;
+
+/**
+ * Неблокирующие чтения студентов для /reactive/students. Идут мимо индексов в памяти и кешей:
+ * это отдельный путь к БД, который не занимает поток на время запроса
+ */
+@Service
+public class ReactiveStudentService {
+    private final ReactiveStudentRepository studentRepository;
+    private final int defaultSearchLimit;
+    private final int maxPageSize;
+
+    public ReactiveStudentService(ReactiveStudentRepository studentRepository,
+                                  @Value("${student.search.default-limit:20}") int defaultSearchLimit,
+                                  @Value("${pagination.max-size:500}") int maxPageSize) {
+        this.studentRepository = studentRepository;
+        this.defaultSearchLimit = defaultSearchLimit;
+        this.maxPageSize = maxPageSize;
+    }
+
+    public Flux<StudentWithoutFaculty> getAllStudents() {
+        return studentRepository.findAll();
+    }
+
+    public Flux<StudentWithoutFaculty> getStudentByAge(int age) {
+        return studentRepository.findByAgeBetween(age, age);
+    }
+
+    public Flux<StudentWithoutFaculty> getStudentByAgeBetween(int minAge, int maxAge) {
+        return studentRepository.findByAgeBetween(minAge, maxAge);
+    }
+
+    public Flux<StudentWithoutFaculty> getStudentsByFacultyId(long facultyId) {
+        return studentRepository.findByFacultyId(facultyId);
+    }
+
+    public Flux<StudentWithoutFaculty> searchByName(String query, Integer limit) {
+        String key = StudentNameIndex.normalize(query);
+        if (key.isEmpty()) {
+            return Flux.empty();
+        }
+        int resultLimit = limit == null || limit <= 0 ? defaultSearchLimit : Math.min(limit, maxPageSize);
+        return studentRepository.searchByName(key, resultLimit);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.hogwarts.school.service;
+
+import java.nio.file.Path;
+
+/**
+ * Файл аватара, уже записанный в хранилище, но ещё не привязанный к студенту в БД
+ */
+record StoredAvatarFile(
+        String fileName,
+        Long studentId,
+        String contentHash,
+        Path filePath,
+        long fileSize,
+        String mediaType
+) {
+}
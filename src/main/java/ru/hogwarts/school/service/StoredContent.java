@@ -0,0 +1,16 @@
+package ru.hogwarts.school.service;
+
+import java.nio.file.Path;
+
+/**
+ * Содержимое, записанное в хранилище потоковой загрузкой: хеш и формат известны только после записи.
+ * {@code created} - файл записан этим вызовом, а не найден на диске готовым
+ */
+record StoredContent(
+        String contentHash,
+        Path filePath,
+        long fileSize,
+        AvatarImageFormat format,
+        boolean created
+) {
+}
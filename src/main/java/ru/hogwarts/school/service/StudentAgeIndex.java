@@ -0,0 +1,208 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.StudentAgeSummary;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс студентов по возрасту в памяти: массив корзин, где корзина {@code buckets[age]} - студенты этого возраста
+ * в порядке id. Фильтр по возрасту и по диапазону читает только нужные корзины, а количество студентов
+ * каждого возраста - это просто размеры корзин.
+ * <p>
+ * Индекс строится одним запросом при первом обращении и дальше поддерживается {@link StudentService}
+ * при добавлении, изменении и удалении студента. Изменения в обход сервиса индекс не увидит,
+ * поэтому он включается настройкой {@code student.age-index.enabled}.
+ */
+@Component
+public class StudentAgeIndex {
+    private final StudentRepository studentRepository;
+    private final boolean enabled;
+    private final int maxAge;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private TreeMap<Long, StudentWithoutFaculty>[] buckets;
+    // Студенты с возрастом вне [0, maxAge] - на случай некорректных данных, их не должно быть много
+    private final Map<Long, StudentAgeSummary> outOfRange = new HashMap<>();
+    private final Map<Long, Integer> ageById = new HashMap<>();
+    private volatile boolean loaded;
+
+    public StudentAgeIndex(StudentRepository studentRepository,
+                           @Value("${student.age-index.enabled:false}") boolean enabled,
+                           @Value("${student.age-index.max-age:150}") int maxAge) {
+        this.studentRepository = studentRepository;
+        this.enabled = enabled;
+        this.maxAge = maxAge;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<StudentWithoutFaculty> findByAge(int age) {
+        return findByAgeBetween(age, age);
+    }
+
+    public List<StudentWithoutFaculty> findByAgeBetween(int minAge, int maxAgeInclusive) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            List<StudentWithoutFaculty> result = new ArrayList<>();
+            for (int age = Math.max(minAge, 0); age <= Math.min(maxAgeInclusive, maxAge); age++) {
+                result.addAll(buckets[age].values());
+            }
+            for (StudentAgeSummary student : outOfRange.values()) {
+                if (student.age() >= minAge && student.age() <= maxAgeInclusive) {
+                    result.add(new StudentWithoutFaculty(student.id(), student.name()));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Количество студентов каждого возраста (только непустые возрасты). Не зависит от числа студентов:
+     * обходится фиксированный массив корзин
+     */
+    public List<AgeCount> countByAge() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Map<Integer, Long> counts = new TreeMap<>();
+            for (int age = 0; age <= maxAge; age++) {
+                if (!buckets[age].isEmpty()) {
+                    counts.put(age, (long) buckets[age].size());
+                }
+            }
+            for (StudentAgeSummary student : outOfRange.values()) {
+                counts.merge(student.age(), 1L, Long::sum);
+            }
+            return counts.entrySet().stream()
+                    .map(entry -> new AgeCount(entry.getKey(), entry.getValue()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long count() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            return ageById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Средний возраст или {@code null}, если студентов нет. Сумма считается по корзинам, а не по студентам
+     */
+    public Double averageAge() {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            if (ageById.isEmpty()) {
+                return null;
+            }
+            long sum = 0;
+            for (int age = 0; age <= maxAge; age++) {
+                sum += (long) age * buckets[age].size();
+            }
+            for (StudentAgeSummary student : outOfRange.values()) {
+                sum += student.age();
+            }
+            return (double) sum / ageById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет или обновляет студента. Вызывается после сохранения в БД
+     */
+    public void put(long id, String name, int age) {
+        // Загрузка индекса держит блокировку на время запроса, поэтому изменение либо уже попало
+        // в загруженные данные, либо применится после загрузки
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // Индекс ещё не построен: он прочитает студента из БД при первом обращении
+                return;
+            }
+            removeEntry(id);
+            addEntry(new StudentAgeSummary(id, name, age));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            removeEntry(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            buckets = newBuckets();
+            for (StudentAgeSummary student : studentRepository.findAllAgeSummaries()) {
+                addEntry(student);
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private TreeMap<Long, StudentWithoutFaculty>[] newBuckets() {
+        TreeMap<Long, StudentWithoutFaculty>[] result = new TreeMap[maxAge + 1];
+        for (int age = 0; age <= maxAge; age++) {
+            result[age] = new TreeMap<>();
+        }
+        return result;
+    }
+
+    private void addEntry(StudentAgeSummary student) {
+        ageById.put(student.id(), student.age());
+        if (student.age() < 0 || student.age() > maxAge) {
+            outOfRange.put(student.id(), student);
+        } else {
+            buckets[student.age()].put(student.id(), new StudentWithoutFaculty(student.id(), student.name()));
+        }
+    }
+
+    private void removeEntry(long id) {
+        Integer age = ageById.remove(id);
+        if (age == null) {
+            return;
+        }
+        if (age < 0 || age > maxAge) {
+            outOfRange.remove(id);
+        } else {
+            buckets[age].remove(id);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * N-граммный индекс имён студентов в памяти - ускорение поиска по имени для БД без pg_trgm (H2).
+ * Для каждой подстроки имени длиной от 1 до 3 символов хранится множество id студентов, в имени которых она есть.
+ * Запрос из 1-2 символов - это одна такая подстрока, длиннее - пересечение множеств его триграмм
+ * с проверкой, что запрос действительно входит в имя.
+ * <p>
+ * Индекс строится одним запросом при первом поиске и дальше поддерживается {@link StudentService}
+ * при добавлении, изменении и удалении студента. Изменения в обход сервиса (SQL-скрипты, данные миграций Flyway,
+ * другие экземпляры приложения) индекс не увидит и будет молча отдавать устаревшие результаты, поэтому он
+ * рассчитан на единственного пишущего и включается настройкой {@code student.name-index.enabled}.
+ * Без него поиск выполняет {@link ru.hogwarts.school.repository.StudentNameSearchRepository}, на PostgreSQL -
+ * по GIN-индексу pg_trgm.
+ */
+@Component
+public class StudentNameIndex {
+    static final int MAX_GRAM_LENGTH = 3;
+
+    private final StudentRepository studentRepository;
+    private final boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Set<Long>> idsByGram = new HashMap<>();
+    private final Map<Long, String> names = new HashMap<>();
+    private volatile boolean loaded;
+
+    public StudentNameIndex(StudentRepository studentRepository,
+                            @Value("${student.name-index.enabled:false}") boolean enabled) {
+        this.studentRepository = studentRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Студенты, в имени которых есть {@code query} без учёта регистра. Сначала имена, которые начинаются с запроса,
+     * затем те, где с запроса начинается одно из слов, затем остальные; внутри группы - более короткие имена
+     * (они ближе к запросу), затем по id
+     */
+    public List<StudentWithoutFaculty> search(String query, int limit) {
+        String key = normalize(query);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Comparator<Match> ranking = Comparator.comparingInt(Match::rank)
+                    .thenComparingInt(match -> match.name().length())
+                    .thenComparingLong(Match::id);
+            // Куча на limit лучших: полная сортировка всех совпадений не нужна
+            PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, ranking.reversed());
+            for (Long id : candidates(key)) {
+                String name = names.get(id);
+                String normalized = normalize(name);
+                int position = normalized.indexOf(key);
+                if (position < 0) {
+                    continue;
+                }
+                int rank = position == 0 ? 0 : Character.isWhitespace(normalized.charAt(position - 1)) ? 1 : 2;
+                best.add(new Match(id, name, rank));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            List<Match> matches = new ArrayList<>(best);
+            matches.sort(ranking);
+            return matches.stream()
+                    .map(match -> new StudentWithoutFaculty(match.id(), match.name()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет или обновляет студента. Вызывается после сохранения в БД
+     */
+    public void put(long id, String name) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // Индекс ещё не построен: он прочитает студента из БД при первом поиске
+                return;
+            }
+            removeEntry(id);
+            addEntry(id, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            removeEntry(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Collection<Long> candidates(String key) {
+        if (key.length() <= MAX_GRAM_LENGTH) {
+            return idsByGram.getOrDefault(key, Set.of());
+        }
+        // Пересечение начинается с самого короткого множества
+        List<Set<Long>> postings = new ArrayList<>();
+        for (String gram : grams(key, MAX_GRAM_LENGTH)) {
+            Set<Long> ids = idsByGram.get(gram);
+            if (ids == null) {
+                return List.of();
+            }
+            postings.add(ids);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        List<Long> result = new ArrayList<>(postings.get(0));
+        for (int i = 1; i < postings.size() && !result.isEmpty(); i++) {
+            result.retainAll(postings.get(i));
+        }
+        return result;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            for (StudentWithoutFaculty student : studentRepository.findAllSummaries()) {
+                addEntry(student.id(), student.name());
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addEntry(long id, String name) {
+        if (name == null) {
+            return;
+        }
+        names.put(id, name);
+        String normalized = normalize(name);
+        for (int length = 1; length <= MAX_GRAM_LENGTH; length++) {
+            for (String gram : grams(normalized, length)) {
+                idsByGram.computeIfAbsent(gram, key -> new HashSet<>()).add(id);
+            }
+        }
+    }
+
+    private void removeEntry(long id) {
+        String name = names.remove(id);
+        if (name == null) {
+            return;
+        }
+        String normalized = normalize(name);
+        for (int length = 1; length <= MAX_GRAM_LENGTH; length++) {
+            for (String gram : grams(normalized, length)) {
+                Set<Long> ids = idsByGram.get(gram);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        idsByGram.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Set<String> grams(String value, int length) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + length <= value.length(); i++) {
+            result.add(value.substring(i, i + length));
+        }
+        return result;
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private record Match(long id, String name, int rank) {
+    }
+}
@@ -1,61 +1,353 @@
 package ru.hogwarts.school.service;
 
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.FacultyStudentStats;
+import ru.hogwarts.school.dto.FacultyWithoutStudents;
+import ru.hogwarts.school.dto.KeysetPage;
+import ru.hogwarts.school.dto.StudentImportResult;
+import ru.hogwarts.school.dto.StudentWithFaculty;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentNameSearchRepository;
 import ru.hogwarts.school.repository.StudentRepository;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 @Service
 public class StudentService {
     private final StudentRepository studentRepository;
     private final FacultyRepository facultyRepository;
+    private final FacultyCache facultyCache;
+    private final StudentAgeIndex ageIndex;
+    private final StudentNameIndex nameIndex;
+    private final StudentNameSearchRepository nameSearchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int importChunkSize;
+    private final int defaultSearchLimit;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
-    public StudentService(StudentRepository studentRepository, FacultyRepository facultyRepository) {
+    public StudentService(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                          FacultyCache facultyCache, StudentAgeIndex ageIndex, StudentNameIndex nameIndex,
+                          StudentNameSearchRepository nameSearchRepository, TransactionTemplate transactionTemplate,
+                          @Value("${student.import.chunk-size:1000}") int importChunkSize,
+                          @Value("${student.search.default-limit:20}") int defaultSearchLimit,
+                          @Value("${pagination.default-size:50}") int defaultPageSize,
+                          @Value("${pagination.max-size:500}") int maxPageSize) {
         this.studentRepository = studentRepository;
         this.facultyRepository = facultyRepository;
+        this.facultyCache = facultyCache;
+        this.ageIndex = ageIndex;
+        this.nameIndex = nameIndex;
+        this.nameSearchRepository = nameSearchRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.importChunkSize = importChunkSize;
+        this.defaultSearchLimit = defaultSearchLimit;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     public Student addStudent(Student student) {
-        return studentRepository.save(student);
+        Student savedStudent = studentRepository.save(student);
+        index(savedStudent);
+        return savedStudent;
     }
 
-    public Student getStudent(long id) {
-        return studentRepository.findById(id).orElse(null);
+    /**
+     * Добавляет студентов одной транзакцией. Благодаря последовательности с pooled-оптимизатором
+     * вставки уходят в БД пачками по hibernate.jdbc.batch_size. Факультеты, присланные одними id, загружаются
+     * одним запросом на всю пачку; если какого-то факультета нет, ничего не сохраняется и возвращается {@code null}
+     */
+    public List<Student> addStudents(List<Student> students) {
+        // Присланные id игнорируются, как и при добавлении одного студента: иначе save сделал бы merge с лишним SELECT
+        students.forEach(student -> student.setId(null));
+        List<Student> savedStudents = transactionTemplate.execute(tx -> {
+            Map<Long, Faculty> faculties = findFaculties(students);
+            if (faculties == null) {
+                return null;
+            }
+            students.forEach(student -> student.setFaculty(resolveFaculty(faculties, student.getFaculty())));
+            return studentRepository.saveAll(students);
+        });
+        if (savedStudents != null) {
+            savedStudents.forEach(this::index);
+        }
+        return savedStudents;
+    }
+
+    /**
+     * Импортирует студентов из потока, не держа его целиком в памяти: каждые {@code student.import.chunk-size}
+     * записей сохраняются своей транзакцией, после чего persistence context освобождается.
+     * Если поток оборвётся на середине, уже сохранённые порции останутся в БД. Порция с несуществующим
+     * факультетом не сохраняется, импорт на ней останавливается и возвращается {@code null}
+     */
+    public StudentImportResult importStudents(Iterator<Student> students) {
+        long imported = 0;
+        List<Student> chunk = new ArrayList<>(importChunkSize);
+        while (students.hasNext()) {
+            chunk.add(students.next());
+            if (chunk.size() >= importChunkSize) {
+                List<Student> savedStudents = addStudents(chunk);
+                if (savedStudents == null) {
+                    return null;
+                }
+                imported += savedStudents.size();
+                chunk = new ArrayList<>(importChunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            List<Student> savedStudents = addStudents(chunk);
+            if (savedStudents == null) {
+                return null;
+            }
+            imported += savedStudents.size();
+        }
+        return new StudentImportResult(imported);
     }
 
     public Student updateStudent(long id, Student student) {
-        return studentRepository.findById(id)
+        // Ответ содержит факультет студента, поэтому он загружается в той же транзакции, что и изменение:
+        // после её завершения ленивая ссылка на факультет уже не инициализируется, а студент остаётся managed
+        // и сохраняется при коммите без merge
+        Student updatedStudent = transactionTemplate.execute(tx -> studentRepository.findById(id)
                 .map(existingStudent -> {
                     existingStudent.setName(student.getName());
                     existingStudent.setAge(student.getAge());
-                    existingStudent.setFaculty(student.getFaculty());
-                    return studentRepository.save(existingStudent);
+                    existingStudent.setFaculty(loadFaculty(student.getFaculty()));
+                    return existingStudent;
                 })
-                .orElse(null);
+                .orElse(null));
+        if (updatedStudent != null) {
+            index(updatedStudent);
+        }
+        return updatedStudent;
     }
 
+    /**
+     * Обновляет студентов одной транзакцией: студенты и их факультеты читаются двумя запросами,
+     * изменения уходят пачками UPDATE. Если хотя бы одного студента или факультета нет,
+     * ничего не меняется и возвращается {@code null}
+     */
+    public List<Student> updateStudents(List<Student> students) {
+        Map<Long, Student> changes = new LinkedHashMap<>();
+        for (Student student : students) {
+            if (student.getId() == null) {
+                return null;
+            }
+            changes.put(student.getId(), student);
+        }
+        List<Student> updatedStudents = transactionTemplate.execute(tx -> {
+            List<Student> existingStudents = studentRepository.findAllById(changes.keySet());
+            if (existingStudents.size() != changes.size()) {
+                return null;
+            }
+            Map<Long, Faculty> faculties = findFaculties(changes.values());
+            if (faculties == null) {
+                return null;
+            }
+            for (Student existingStudent : existingStudents) {
+                Student student = changes.get(existingStudent.getId());
+                existingStudent.setName(student.getName());
+                existingStudent.setAge(student.getAge());
+                existingStudent.setFaculty(resolveFaculty(faculties, student.getFaculty()));
+            }
+            return existingStudents;
+        });
+        if (updatedStudents != null) {
+            updatedStudents.forEach(this::index);
+        }
+        return updatedStudents;
+    }
 
     public void removeStudent(long id) {
         studentRepository.deleteById(id);
+        unindex(id);
+    }
+
+    /**
+     * Удаляет студентов одним запросом {@code DELETE ... WHERE id IN (...)}, без загрузки сущностей
+     */
+    public void removeStudents(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        studentRepository.deleteAllByIdInBatch(ids);
+        ids.forEach(this::unindex);
+    }
+
+    public Collection<StudentWithoutFaculty> getAllStudents() {
+        return studentRepository.findAllSummaries();
+    }
+
+    public StudentWithFaculty getStudentWithFaculty(long id) {
+        return studentRepository.findStudentWithFacultyById(id).orElse(null);
     }
 
-    public Collection<Student> getAllStudents() {
-        return studentRepository.findAll();
+    /**
+     * Страница студентов с id больше {@code afterId}. Запрашивается на одну запись больше размера страницы,
+     * чтобы без отдельного count узнать, есть ли следующая
+     */
+    public KeysetPage<StudentWithoutFaculty> getStudentsPage(Long afterId, Integer size) {
+        int pageSize = resolvePageSize(size);
+        List<StudentWithoutFaculty> rows = studentRepository.findPageAfter(
+                afterId != null ? afterId : 0L, Limit.of(pageSize + 1));
+        if (rows.size() <= pageSize) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<StudentWithoutFaculty> page = rows.subList(0, pageSize);
+        return new KeysetPage<>(page, page.get(pageSize - 1).id());
     }
 
-    public Collection<Student> getStudentByAge(int age) {
+    /**
+     * Передаёт всех студентов в {@code action} по одному, читая их курсором. Строки сразу проецируются в DTO
+     * и не попадают в persistence context, поэтому расход памяти не зависит от размера таблицы
+     */
+    @Transactional(readOnly = true)
+    public void forEachStudent(Consumer<StudentWithoutFaculty> action) {
+        try (Stream<StudentWithoutFaculty> rows = studentRepository.streamAllSummaries()) {
+            rows.forEach(action);
+        }
+    }
+
+    public Collection<StudentWithoutFaculty> getStudentByAge(int age) {
+        if (ageIndex.isEnabled()) {
+            return ageIndex.findByAge(age);
+        }
         return studentRepository.findByAge(age);
     }
 
-    public Collection<Student> getStudentByAgeBetween(int minAge, int maxAge) {
+    public Collection<StudentWithoutFaculty> getStudentByAgeBetween(int minAge, int maxAge) {
+        if (ageIndex.isEnabled()) {
+            return ageIndex.findByAgeBetween(minAge, maxAge);
+        }
         return studentRepository.findByAgeBetween(minAge, maxAge);
     }
 
-    public Faculty getFacultyByStudentId(Long studentId) {
-        return facultyRepository.findByStudentsId(studentId);
+    public List<AgeCount> getStudentCountByAge() {
+        if (ageIndex.isEnabled()) {
+            return ageIndex.countByAge();
+        }
+        return studentRepository.countByAge();
+    }
+
+    /**
+     * Поиск по подстроке имени без учёта регистра с ранжированием (см. {@link StudentNameSearchRepository}).
+     * На PostgreSQL ищет БД по триграммному индексу, на остальных БД - индекс в памяти
+     */
+    public List<StudentWithoutFaculty> searchByName(String query, Integer limit) {
+        String key = StudentNameIndex.normalize(query);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        int resultLimit = limit == null || limit <= 0 ? defaultSearchLimit : Math.min(limit, maxPageSize);
+        if (nameIndex.isEnabled()) {
+            return nameIndex.search(key, resultLimit);
+        }
+        return nameSearchRepository.search(key, resultLimit);
+    }
+
+    public long getStudentCount() {
+        if (ageIndex.isEnabled()) {
+            return ageIndex.count();
+        }
+        return studentRepository.count();
+    }
+
+    /**
+     * Средний возраст студентов; 0, если студентов нет
+     */
+    public double getAverageAge() {
+        Double averageAge = ageIndex.isEnabled() ? ageIndex.averageAge() : studentRepository.findAverageAge();
+        return averageAge != null ? averageAge : 0;
+    }
+
+    public List<StudentWithoutFaculty> getLastStudents(Integer count) {
+        return studentRepository.findLast(Limit.of(resolvePageSize(count)));
+    }
+
+    public List<FacultyStudentStats> getFacultyStats() {
+        return studentRepository.findFacultyStats();
+    }
+
+    public FacultyWithoutStudents getFacultyByStudentId(Long studentId) {
+        if (facultyCache.isEnabled()) {
+            // Из БД читается только внешний ключ студента, сам факультет берётся из кеша
+            return studentRepository.findFacultyIdById(studentId)
+                    .map(facultyCache::findById)
+                    .orElse(null);
+        }
+        return studentRepository.findFacultyByStudentId(studentId).orElse(null);
+    }
+
+    /**
+     * Обновляет индексы в памяти после сохранения студента
+     */
+    private void index(Student student) {
+        ageIndex.put(student.getId(), student.getName(), student.getAge());
+        nameIndex.put(student.getId(), student.getName());
+    }
+
+    /**
+     * Факультет из БД вместо присланного клиентом: в запросе обычно есть только его id
+     */
+    /**
+     * Факультеты, на которые ссылаются студенты, одним запросом по id; {@code null}, если какого-то из них нет
+     */
+    private Map<Long, Faculty> findFaculties(Collection<Student> students) {
+        Set<Long> facultyIds = students.stream()
+                .map(Student::getFaculty)
+                .filter(faculty -> faculty != null && faculty.getId() != null)
+                .map(Faculty::getId)
+                .collect(Collectors.toSet());
+        if (facultyIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Faculty> faculties = facultyRepository.findAllById(facultyIds).stream()
+                .collect(Collectors.toMap(Faculty::getId, Function.identity()));
+        return faculties.size() == facultyIds.size() ? faculties : null;
+    }
+
+    private static Faculty resolveFaculty(Map<Long, Faculty> faculties, Faculty faculty) {
+        return faculty != null && faculty.getId() != null ? faculties.get(faculty.getId()) : null;
+    }
+
+    private Faculty loadFaculty(Faculty faculty) {
+        if (faculty == null || faculty.getId() == null) {
+            return null;
+        }
+        Faculty reference = facultyRepository.getReferenceById(faculty.getId());
+        Hibernate.initialize(reference);
+        return reference;
+    }
+
+    private void unindex(long id) {
+        ageIndex.remove(id);
+        nameIndex.remove(id);
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
     }
 }
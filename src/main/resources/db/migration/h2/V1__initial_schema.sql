@@ -0,0 +1,44 @@
+-- Та же схема, что и для PostgreSQL (db/migration/postgresql), в диалекте H2
+
+CREATE TABLE faculty
+(
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name             VARCHAR(255),
+    color            VARCHAR(255),
+    name_normalized  VARCHAR(255),
+    color_normalized VARCHAR(255)
+);
+
+CREATE SEQUENCE student_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE student
+(
+    id         BIGINT PRIMARY KEY,
+    name       VARCHAR(255),
+    age        INTEGER NOT NULL,
+    faculty_id BIGINT,
+    CONSTRAINT fk_student_faculty FOREIGN KEY (faculty_id) REFERENCES faculty (id)
+);
+
+CREATE TABLE avatars
+(
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    file_path      VARCHAR(255),
+    file_size      BIGINT NOT NULL,
+    media_type     VARCHAR(255),
+    content_hash   VARCHAR(64),
+    preview_status VARCHAR(255),
+    student_id     BIGINT,
+    CONSTRAINT fk_avatars_student FOREIGN KEY (student_id) REFERENCES student (id)
+);
+
+CREATE TABLE avatar_renditions
+(
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    width        INTEGER NOT NULL,
+    height       INTEGER NOT NULL,
+    file_size    BIGINT  NOT NULL,
+    media_type   VARCHAR(255),
+    data         BLOB,
+    content_hash VARCHAR(64)
+);
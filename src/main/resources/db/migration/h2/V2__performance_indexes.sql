@@ -0,0 +1,11 @@
+-- Те же индексы, что и для PostgreSQL, кроме триграммного: на H2 поиск по имени обслуживает StudentNameIndex
+
+CREATE INDEX idx_student_age ON student (age);
+CREATE INDEX idx_student_faculty_id ON student (faculty_id);
+
+CREATE UNIQUE INDEX uk_avatars_student_id ON avatars (student_id);
+CREATE INDEX idx_avatars_content_hash ON avatars (content_hash);
+CREATE INDEX idx_avatar_renditions_content_hash ON avatar_renditions (content_hash);
+
+CREATE INDEX idx_faculty_name_normalized ON faculty (name_normalized);
+CREATE INDEX idx_faculty_color_normalized ON faculty (color_normalized);
@@ -0,0 +1,2 @@
+-- Превью хранятся в самой строке, как bytea в PostgreSQL (см. postgresql/V4)
+ALTER TABLE avatar_renditions ALTER COLUMN data SET DATA TYPE VARBINARY;
@@ -0,0 +1,8 @@
+-- Время смены содержимого аватара - Last-Modified оригинала вместо времени изменения общего файла.
+-- Для уже загруженных аватаров оно неизвестно: считаем, что содержимое сменилось при миграции
+ALTER TABLE avatars
+    ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE;
+
+UPDATE avatars
+SET updated_at = CURRENT_TIMESTAMP
+WHERE updated_at IS NULL;
@@ -0,0 +1,56 @@
+-- Схема, которую раньше создавал Hibernate (ddl-auto=update).
+-- На базе, созданной старой версией приложения, таблицы уже есть: CREATE ... IF NOT EXISTS их пропускает,
+-- а ADD COLUMN IF NOT EXISTS добавляет колонки, появившиеся позже
+
+CREATE TABLE IF NOT EXISTS faculty
+(
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name             VARCHAR(255),
+    color            VARCHAR(255),
+    name_normalized  VARCHAR(255),
+    color_normalized VARCHAR(255)
+);
+
+-- id студентов выдаются пачками по 50 (pooled-оптимизатор Hibernate, см. Student.ID_ALLOCATION_SIZE)
+CREATE SEQUENCE IF NOT EXISTS student_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS student
+(
+    id         BIGINT PRIMARY KEY,
+    name       VARCHAR(255),
+    age        INTEGER NOT NULL,
+    faculty_id BIGINT,
+    CONSTRAINT fk_student_faculty FOREIGN KEY (faculty_id) REFERENCES faculty (id)
+);
+
+CREATE TABLE IF NOT EXISTS avatars
+(
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    file_path      VARCHAR(255),
+    file_size      BIGINT NOT NULL,
+    media_type     VARCHAR(255),
+    content_hash   VARCHAR(64),
+    preview_status VARCHAR(255),
+    student_id     BIGINT,
+    CONSTRAINT fk_avatars_student FOREIGN KEY (student_id) REFERENCES student (id)
+);
+
+CREATE TABLE IF NOT EXISTS avatar_renditions
+(
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    width        INTEGER NOT NULL,
+    height       INTEGER NOT NULL,
+    file_size    BIGINT  NOT NULL,
+    media_type   VARCHAR(255),
+    data         OID,
+    content_hash VARCHAR(64)
+);
+
+ALTER TABLE faculty
+    ADD COLUMN IF NOT EXISTS name_normalized VARCHAR(255),
+    ADD COLUMN IF NOT EXISTS color_normalized VARCHAR(255);
+ALTER TABLE avatars
+    ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64),
+    ADD COLUMN IF NOT EXISTS preview_status VARCHAR(255);
+ALTER TABLE avatar_renditions
+    ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
@@ -0,0 +1,18 @@
+-- Индексы для фильтров и связей. PostgreSQL не индексирует внешние ключи сам,
+-- поэтому без них выборки студентов факультета и аватара студента - это просмотр всей таблицы
+
+CREATE INDEX IF NOT EXISTS idx_student_age ON student (age);
+CREATE INDEX IF NOT EXISTS idx_student_faculty_id ON student (faculty_id);
+
+-- У студента не больше одного аватара; уникальный индекс заодно обслуживает поиск аватара по студенту
+CREATE UNIQUE INDEX IF NOT EXISTS uk_avatars_student_id ON avatars (student_id);
+CREATE INDEX IF NOT EXISTS idx_avatars_content_hash ON avatars (content_hash);
+CREATE INDEX IF NOT EXISTS idx_avatar_renditions_content_hash ON avatar_renditions (content_hash);
+
+-- Поиск факультетов без учёта регистра по колонкам в нижнем регистре
+CREATE INDEX IF NOT EXISTS idx_faculty_name_normalized ON faculty (name_normalized);
+CREATE INDEX IF NOT EXISTS idx_faculty_color_normalized ON faculty (color_normalized);
+
+-- Поиск студентов по подстроке имени: GIN-индекс по триграммам обслуживает lower(name) LIKE '%...%'
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_student_name_trgm ON student USING gin (lower(name) gin_trgm_ops);
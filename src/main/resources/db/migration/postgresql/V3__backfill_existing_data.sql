@@ -0,0 +1,13 @@
+-- Данные, сохранённые старыми версиями приложения
+
+-- Колонки для поиска факультетов без учёта регистра приложение заполняет само; здесь - строки, сохранённые до них
+UPDATE faculty
+SET name_normalized  = lower(name),
+    color_normalized = lower(color)
+WHERE (name_normalized IS NULL AND name IS NOT NULL)
+   OR (color_normalized IS NULL AND color IS NOT NULL);
+
+-- Раньше id студентов выдавала identity-колонка. Pooled-оптимизатор выдаёт id из диапазона
+-- (nextval - 50, nextval], поэтому последовательность сдвигается на max(id) + 50, чтобы новые id не совпали со старыми
+SELECT setval('student_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM student) + 50,
+                                      (SELECT last_value FROM student_seq)));
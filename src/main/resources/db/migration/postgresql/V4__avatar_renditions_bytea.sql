@@ -0,0 +1,26 @@
+-- Превью хранились large object'ами (@Lob -> OID): удаление строк оставляло их в pg_largeobject.
+-- Байты переносятся в колонку bytea, large object'ы превью удаляются. На новой базе V1 уже создал OID-колонку,
+-- на базе ddl-auto - тоже, поэтому конвертируется любая OID-колонка
+DO
+$$
+BEGIN
+    IF (SELECT data_type
+        FROM information_schema.columns
+        WHERE table_schema = current_schema()
+          AND table_name = 'avatar_renditions'
+          AND column_name = 'data') = 'oid' THEN
+        ALTER TABLE avatar_renditions ADD COLUMN data_bytes BYTEA;
+
+        UPDATE avatar_renditions r
+        SET data_bytes = lo_get(r.data)
+        WHERE EXISTS (SELECT 1 FROM pg_largeobject_metadata m WHERE m.oid = r.data);
+
+        PERFORM lo_unlink(r.data)
+        FROM avatar_renditions r
+        WHERE EXISTS (SELECT 1 FROM pg_largeobject_metadata m WHERE m.oid = r.data);
+
+        ALTER TABLE avatar_renditions DROP COLUMN data;
+        ALTER TABLE avatar_renditions RENAME COLUMN data_bytes TO data;
+    END IF;
+END
+$$;
@@ -0,0 +1,80 @@
+package ru.hogwarts.school.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class ConnectionHoldTrackingDataSourceTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final DataSource target = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(target.getConnection()).thenReturn(connection);
+    }
+
+    @Test
+    void testHoldTimeIsRecordedForCallingMethod() throws SQLException {
+        ConnectionHoldTrackingDataSource dataSource = dataSource("ru.hogwarts.school.config");
+
+        try (Connection tracked = dataSource.getConnection()) {
+            tracked.setReadOnly(true);
+        }
+
+        verify(connection).setReadOnly(true);
+        verify(connection).close();
+        assertEquals(1, holdCount("ConnectionHoldTrackingDataSourceTest.testHoldTimeIsRecordedForCallingMethod"),
+                "Время должно относиться к методу, который взял соединение");
+    }
+
+    @Test
+    void testLambdaIsAttributedToEnclosingMethod() throws Exception {
+        ConnectionHoldTrackingDataSource dataSource = dataSource("ru.hogwarts.school.config");
+
+        Callable<Void> work = () -> {
+            dataSource.getConnection().close();
+            return null;
+        };
+        work.call();
+
+        assertEquals(1, holdCount("ConnectionHoldTrackingDataSourceTest.testLambdaIsAttributedToEnclosingMethod"));
+    }
+
+    @Test
+    void testRepeatedCloseIsRecordedOnce() throws SQLException {
+        ConnectionHoldTrackingDataSource dataSource = dataSource("ru.hogwarts.school.config");
+
+        Connection tracked = dataSource.getConnection();
+        tracked.close();
+        tracked.close();
+
+        assertEquals(1, holdCount("ConnectionHoldTrackingDataSourceTest.testRepeatedCloseIsRecordedOnce"));
+    }
+
+    @Test
+    void testCallerOutsideOwnerPackageIsAttributedToOther() throws SQLException {
+        ConnectionHoldTrackingDataSource dataSource = dataSource("ru.hogwarts.school.service");
+
+        dataSource.getConnection().close();
+
+        assertEquals(1, holdCount(ConnectionHoldTrackingDataSource.UNKNOWN_OWNER));
+    }
+
+    private ConnectionHoldTrackingDataSource dataSource(String ownerPackage) {
+        return new ConnectionHoldTrackingDataSource(target, () -> registry, ownerPackage, Duration.ofSeconds(1));
+    }
+
+    private long holdCount(String method) {
+        return registry.get(ConnectionHoldTrackingDataSource.METRIC).tag("method", method).timer().count();
+    }
+}
@@ -0,0 +1,362 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.hogwarts.school.dto.AvatarImportResult;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.PreviewStatus;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarRenditionRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.AvatarPreviewService;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Своя БД: аватары ссылаются на студентов, и общая testdb мешала бы очистке в других тестовых классах.
+// Пул превью из одного потока без очереди: занятый поток заставляет выполнять генерацию в потоке запроса.
+// Без grace-периода файл содержимого удаляется сразу со снятием последней ссылки.
+// Лимиты записи импорта и потоковой загрузки уменьшены, чтобы их проверка не требовала многомегабайтных файлов
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:avatars",
+        "spring.r2dbc.url=r2dbc:pool:h2:mem:///avatars",
+        "avatar.preview.executor.pool-size=1",
+        "avatar.preview.executor.queue-capacity=0",
+        "avatar.storage.grace-period=0s",
+        "avatar.import.max-entry-bytes=4096",
+        "avatar.upload.max-bytes=4096"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class AvatarControllerIntegrationTest {
+    @TempDir
+    static Path avatarsDir;
+
+    @LocalServerPort
+    private int port;
+    private String baseUrl;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private AvatarRepository avatarRepository;
+    @Autowired
+    private AvatarRenditionRepository renditionRepository;
+    @Autowired
+    private AvatarPreviewService previewService;
+    @Autowired
+    @Qualifier("avatarPreviewExecutor")
+    private ThreadPoolTaskExecutor previewExecutor;
+
+    @DynamicPropertySource
+    static void avatarProperties(DynamicPropertyRegistry registry) {
+        registry.add("avatar.directory.path", avatarsDir::toString);
+    }
+
+    @BeforeEach
+    void setUp() {
+        baseUrl = "http://localhost:" + port + "/avatar";
+        renditionRepository.deleteAll();
+        avatarRepository.deleteAll();
+        studentRepository.deleteAll();
+    }
+
+    @Test
+    void testPreviewIsGeneratedOnRequestThreadWhenQueueIsFull() throws Exception {
+        Student student = saveStudent("Гарри Поттер");
+        CountDownLatch release = new CountDownLatch(1);
+        // Единственный поток пула занят - задача превью отклоняется и выполняется CallerRunsPolicy
+        previewExecutor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            ResponseEntity<String> response = uploadStream(student.getId(), png(300, 200));
+
+            assertEquals(HttpStatus.OK, response.getStatusCode(), response.getBody());
+            assertEquals(PreviewStatus.READY, avatarRepository.findByStudentId(student.getId())
+                            .map(Avatar::getPreviewStatus).orElse(null),
+                    "Превью должно быть готово сразу: его сгенерировал поток запроса");
+            ResponseEntity<byte[]> preview = restTemplate.getForEntity(
+                    baseUrl + "/" + student.getId() + "/preview?width=64", byte[].class);
+            assertEquals(HttpStatus.OK, preview.getStatusCode());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testPendingPreviewIsRescheduledOnStartup() throws Exception {
+        Student student = saveStudent("Гермиона Грейнджер");
+        // Аватар, превью которого не успели сгенерировать до остановки
+        Path file = avatarsDir.resolve("pending.png");
+        Files.write(file, png(120, 120));
+        Avatar avatar = new Avatar();
+        avatar.setStudent(student);
+        avatar.setFilePath(file.toString());
+        avatar.setFileSize(Files.size(file));
+        avatar.setMediaType("image/png");
+        avatar.setContentHash("f".repeat(64));
+        avatar.setPreviewStatus(PreviewStatus.PENDING);
+        avatarRepository.save(avatar);
+
+        previewService.run(null);
+
+        assertEquals(PreviewStatus.READY, awaitPreviewStatus(student.getId()),
+                "Превью в статусе PENDING должно быть поставлено в очередь заново");
+        assertTrue(renditionRepository.existsByContentHash("f".repeat(64)));
+    }
+
+    @Test
+    void testSameContentIsStoredOnceAndReleasedWithLastReference() throws Exception {
+        Student harry = saveStudent("Гарри Поттер");
+        Student ron = saveStudent("Рон Уизли");
+        byte[] content = png(200, 100);
+
+        assertEquals(HttpStatus.OK, uploadStream(harry.getId(), content).getStatusCode());
+        assertEquals(PreviewStatus.READY, awaitPreviewStatus(harry.getId()));
+        long renditions = renditionRepository.count();
+        assertEquals(HttpStatus.OK, uploadStream(ron.getId(), content).getStatusCode());
+
+        Avatar harryAvatar = avatarRepository.findByStudentId(harry.getId()).orElseThrow();
+        Avatar ronAvatar = avatarRepository.findByStudentId(ron.getId()).orElseThrow();
+        assertEquals(harryAvatar.getFilePath(), ronAvatar.getFilePath(), "Одинаковое содержимое - один файл");
+        assertEquals(PreviewStatus.READY, ronAvatar.getPreviewStatus(), "Готовые превью должны переиспользоваться");
+        assertEquals(renditions, renditionRepository.count(), "Превью не должны генерироваться повторно");
+
+        restTemplate.delete(baseUrl + "/" + harry.getId());
+
+        Path file = Path.of(ronAvatar.getFilePath());
+        assertTrue(Files.exists(file), "Файл нужен оставшемуся аватару");
+        assertTrue(renditionRepository.existsByContentHash(ronAvatar.getContentHash()));
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity(
+                baseUrl + "/" + ron.getId() + "/preview", byte[].class).getStatusCode());
+
+        restTemplate.delete(baseUrl + "/" + ron.getId());
+
+        assertFalse(Files.exists(file), "Файл без ссылок должен удаляться");
+        assertFalse(renditionRepository.existsByContentHash(ronAvatar.getContentHash()),
+                "Превью без ссылок должны удаляться");
+    }
+
+    @Test
+    void testOriginalValidatorsDoNotDependOnSharedFile() throws Exception {
+        Student harry = saveStudent("Гарри Поттер");
+        Student ron = saveStudent("Рон Уизли");
+        byte[] content = png(200, 100);
+        assertEquals(HttpStatus.OK, uploadStream(harry.getId(), content).getStatusCode());
+        Avatar harryAvatar = avatarRepository.findByStudentId(harry.getId()).orElseThrow();
+
+        ResponseEntity<byte[]> original = restTemplate.getForEntity(
+                baseUrl + "/" + harry.getId() + "/avatar-from-file", byte[].class);
+        assertEquals(HttpStatus.OK, original.getStatusCode());
+        assertEquals("\"" + harryAvatar.getContentHash() + "\"", original.getHeaders().getETag(),
+                "Сильный ETag - хеш содержимого");
+        long lastModified = original.getHeaders().getLastModified();
+
+        // Загрузка того же содержимого другим студентом переиспользует файл и обновляет время его изменения
+        assertEquals(HttpStatus.OK, uploadStream(ron.getId(), content).getStatusCode());
+        Files.setLastModifiedTime(Path.of(harryAvatar.getFilePath()),
+                FileTime.from(Instant.now().plus(1, ChronoUnit.DAYS)));
+
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.setIfNoneMatch(original.getHeaders().getETag());
+        ResponseEntity<byte[]> revalidated = restTemplate.exchange(baseUrl + "/" + harry.getId() + "/avatar-from-file",
+                HttpMethod.GET, new HttpEntity<>(conditional), byte[].class);
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatusCode(), "Кеш клиента остаётся действительным");
+        ResponseEntity<byte[]> again = restTemplate.getForEntity(
+                baseUrl + "/" + harry.getId() + "/avatar-from-file", byte[].class);
+        assertEquals(lastModified, again.getHeaders().getLastModified(),
+                "Last-Modified не зависит от загрузок других студентов");
+    }
+
+    @Test
+    void testTooLargeStreamUploadIsRejectedWith413() throws Exception {
+        Student student = saveStudent("Невилл Долгопупс");
+        byte[] content = Arrays.copyOf(png(10, 10), 4097);
+
+        ResponseEntity<String> response = uploadStream(student.getId(), content);
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, response.getStatusCode(), response.getBody());
+        assertTrue(avatarRepository.findByStudentId(student.getId()).isEmpty());
+    }
+
+    @Test
+    void testImportArchiveReportsResultPerEntry() throws Exception {
+        Student harry = saveStudent("Гарри Поттер");
+        Student ron = saveStudent("Рон Уизли");
+        Student neville = saveStudent("Невилл Долгопупс");
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("photos/", null);
+        entries.put("photos/" + harry.getId() + ".png", png(120, 80));
+        entries.put("photos/hermione.png", png(90, 90));
+        entries.put("photos/" + (ron.getId() + 1000) + ".png", png(70, 70));
+        entries.put("photos/" + ron.getId() + ".png", new byte[4097]);
+        // Не изображение, хотя расширение .png
+        entries.put("photos/" + neville.getId() + ".png", "not an image".getBytes());
+        long filesBefore = countFiles();
+
+        Map<String, AvatarImportResult> results = importArchive(entries);
+
+        assertEquals(5, results.size(), "Каталоги в архиве пропускаются, по каждому файлу - свой результат");
+        assertEquals(AvatarImportResult.Status.IMPORTED, results.get(harry.getId() + ".png").status());
+        assertEquals(AvatarImportResult.Status.FAILED, results.get("hermione.png").status());
+        AvatarImportResult unknownStudent = results.get((ron.getId() + 1000) + ".png");
+        assertEquals(AvatarImportResult.Status.FAILED, unknownStudent.status());
+        assertEquals("Student not found", unknownStudent.message());
+        AvatarImportResult tooLarge = results.get(ron.getId() + ".png");
+        assertEquals(AvatarImportResult.Status.FAILED, tooLarge.status());
+        assertTrue(tooLarge.message().contains("4096"), tooLarge.message());
+        AvatarImportResult notImage = results.get(neville.getId() + ".png");
+        assertEquals(AvatarImportResult.Status.FAILED, notImage.status(), "Формат проверяется по сигнатуре");
+        assertEquals("Unsupported image format", notImage.message());
+        assertTrue(avatarRepository.findByStudentId(neville.getId()).isEmpty());
+
+        assertEquals(filesBefore + 1, countFiles(), "Для отклонённых записей файлы не должны оставаться на диске");
+        assertTrue(avatarRepository.findByStudentId(harry.getId()).isPresent());
+        assertTrue(avatarRepository.findByStudentId(ron.getId()).isEmpty());
+        assertEquals(PreviewStatus.READY, awaitPreviewStatus(harry.getId()));
+
+        Map<String, AvatarImportResult> repeated = importArchive(
+                Map.of(harry.getId() + ".png", entries.get("photos/" + harry.getId() + ".png")));
+        assertEquals(AvatarImportResult.Status.UNCHANGED, repeated.get(harry.getId() + ".png").status(),
+                "Повторный импорт того же содержимого ничего не меняет");
+    }
+
+    @Test
+    void testCorruptedArchiveReturnsPartialReport() throws Exception {
+        Student harry = saveStudent("Гарри Поттер");
+        Student ron = saveStudent("Рон Уизли");
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put(harry.getId() + ".png", png(120, 80));
+        entries.put(ron.getId() + ".png", png(70, 70));
+        byte[] archive = zip(entries);
+        // Первый байт сжатых данных второй записи - блок deflate недопустимого типа
+        byte[] secondName = (ron.getId() + ".png").getBytes();
+        int nameOffset = indexOf(archive, secondName);
+        archive[nameOffset + secondName.length] = (byte) 0xFF;
+
+        ResponseEntity<AvatarImportResult[]> response = postArchive(archive);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        AvatarImportResult[] results = response.getBody();
+        assertNotNull(results, "Клиент должен узнать, что успело импортироваться");
+        assertEquals(2, results.length);
+        assertEquals(harry.getId() + ".png", results[0].fileName());
+        assertEquals(AvatarImportResult.Status.IMPORTED, results[0].status());
+        assertEquals(AvatarImportResult.Status.ARCHIVE_ERROR, results[1].status());
+        assertEquals(ron.getId() + ".png", results[1].fileName(), "Отметка указывает на повреждённую запись");
+        assertTrue(avatarRepository.findByStudentId(harry.getId()).isPresent());
+        assertTrue(avatarRepository.findByStudentId(ron.getId()).isEmpty());
+    }
+
+    private Map<String, AvatarImportResult> importArchive(Map<String, byte[]> entries) throws IOException {
+        ResponseEntity<AvatarImportResult[]> response = postArchive(zip(entries));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return Arrays.stream(response.getBody())
+                .collect(Collectors.toMap(AvatarImportResult::fileName, Function.identity()));
+    }
+
+    private ResponseEntity<AvatarImportResult[]> postArchive(byte[] archive) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        return restTemplate.postForEntity(baseUrl + "/import",
+                new HttpEntity<>(archive, headers), AvatarImportResult[].class);
+    }
+
+    private static byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                if (entry.getValue() != null) {
+                    zip.write(entry.getValue());
+                }
+                zip.closeEntry();
+            }
+        }
+        return archive.toByteArray();
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            if (Arrays.equals(data, i, i + pattern.length, pattern, 0, pattern.length)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Pattern not found");
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(avatarsDir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private PreviewStatus awaitPreviewStatus(long studentId) throws InterruptedException {
+        PreviewStatus status = null;
+        for (int attempt = 0; attempt < 100; attempt++) {
+            status = avatarRepository.findByStudentId(studentId).map(Avatar::getPreviewStatus).orElse(null);
+            if (status != PreviewStatus.PENDING) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        return status;
+    }
+
+    private ResponseEntity<String> uploadStream(long studentId, byte[] content) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.IMAGE_PNG);
+        return restTemplate.postForEntity(baseUrl + "/" + studentId + "/stream",
+                new HttpEntity<>(content, headers), String.class);
+    }
+
+    private Student saveStudent(String name) {
+        Student student = new Student();
+        student.setName(name);
+        student.setAge(11);
+        return studentRepository.save(student);
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
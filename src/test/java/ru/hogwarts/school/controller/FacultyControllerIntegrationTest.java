@@ -6,18 +6,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.*;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.hogwarts.school.dto.FacultyWithStudents;
 import ru.hogwarts.school.dto.FacultyWithoutStudents;
 import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.support.SqlStatementCounter;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Import(SqlStatementCounter.class)
 public class FacultyControllerIntegrationTest {
 
     @LocalServerPort
@@ -35,10 +40,19 @@ public class FacultyControllerIntegrationTest {
     @Autowired
     private FacultyRepository facultyRepository;
 
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private SqlStatementCounter sqlStatementCounter;
+
     @BeforeEach
     void setUp() {
         baseUrl = "http://localhost:" + port + "/faculty";
-        facultyRepository.deleteAll(); // Очищаем базу перед каждым тестом
+        // Очищаем базу перед каждым тестом. БД общая с другими тестовыми классами, и в ней могут остаться
+        // студенты с факультетами, поэтому сначала удаляются студенты, иначе не даст внешний ключ
+        studentRepository.deleteAll();
+        facultyRepository.deleteAll();
     }
 
     @Test
@@ -101,6 +115,44 @@ public class FacultyControllerIntegrationTest {
         assertEquals(testColor, response.getBody().color(), "Цвет должен совпадать");
     }
 
+    @Test
+    void testGetFacultyWithStudentsUsesSingleQuery() {
+        // ПОДГОТОВКА: факультет с одним студентом и факультет с пятью
+        Faculty small = saveFacultyWithStudents("Пуффендуй", 1);
+        Faculty large = saveFacultyWithStudents("Когтевран", 5);
+        // Прогреваем кеш факультетов, чтобы считать только запросы самого эндпоинта
+        restTemplate.getForEntity(baseUrl, FacultyWithoutStudents[].class);
+
+        for (Faculty faculty : new Faculty[]{small, large}) {
+            sqlStatementCounter.reset();
+
+            ResponseEntity<FacultyWithStudents> response = restTemplate.getForEntity(
+                    baseUrl + "/" + faculty.getId(),
+                    FacultyWithStudents.class
+            );
+
+            assertEquals(HttpStatus.OK, response.getStatusCode(), "HTTP статус должен быть 200 OK");
+            assertNotNull(response.getBody(), "Тело ответа не должно быть null");
+            // Студенты загружаются тем же запросом, что и факультет, сколько бы их ни было
+            assertEquals(1, sqlStatementCounter.count(), "Факультет со студентами должен читаться одним запросом");
+        }
+    }
+
+    private Faculty saveFacultyWithStudents(String name, int studentCount) {
+        Faculty faculty = new Faculty();
+        faculty.setName(name);
+        faculty.setColor(testColor);
+        facultyRepository.save(faculty);
+        for (int i = 0; i < studentCount; i++) {
+            Student student = new Student();
+            student.setName(name + " " + i);
+            student.setAge(11);
+            student.setFaculty(faculty);
+            studentRepository.save(student);
+        }
+        return faculty;
+    }
+
     @Test
     void testGetNonExistentFaculty() {
         // ПРОВЕРКА: База пуста
@@ -261,6 +313,53 @@ public class FacultyControllerIntegrationTest {
         assertEquals("testFaculty1", response.getBody()[0].name(), "Название должно совпадать");
     }
 
+    @Test
+    void testColorAndSearchLookupsAreServedFromCache() {
+        Faculty faculty = new Faculty();
+        faculty.setName("Гриффиндор");
+        faculty.setColor("Красный");
+        facultyRepository.save(faculty);
+        // Первое чтение загружает кеш
+        restTemplate.getForEntity(baseUrl, FacultyWithoutStudents[].class);
+
+        sqlStatementCounter.reset();
+        ResponseEntity<FacultyWithoutStudents[]> byColor = restTemplate.getForEntity(
+                baseUrl + "/color/КРАСНЫЙ", FacultyWithoutStudents[].class);
+        ResponseEntity<FacultyWithoutStudents[]> byName = restTemplate.getForEntity(
+                baseUrl + "/search?query=гриффиндор", FacultyWithoutStudents[].class);
+        ResponseEntity<FacultyWithoutStudents[]> missing = restTemplate.getForEntity(
+                baseUrl + "/search?query=несуществующий", FacultyWithoutStudents[].class);
+
+        assertEquals(HttpStatus.OK, byColor.getStatusCode(), "Поиск по цвету не должен зависеть от регистра");
+        assertEquals(HttpStatus.OK, byName.getStatusCode(), "Поиск по названию не должен зависеть от регистра");
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+        assertEquals(0, sqlStatementCounter.count(), "Поиск по цвету и названию должен обходиться без SQL");
+    }
+
+    @Test
+    void testCacheIsInvalidatedOnUpdate() {
+        Faculty faculty = new Faculty();
+        faculty.setName(testName);
+        faculty.setColor(testColor);
+        Faculty savedFaculty = facultyRepository.save(faculty);
+        restTemplate.getForEntity(baseUrl, FacultyWithoutStudents[].class);
+
+        // Изменение через API сбрасывает кеш
+        Faculty updatedFaculty = new Faculty();
+        updatedFaculty.setId(savedFaculty.getId());
+        updatedFaculty.setName(updatedName);
+        updatedFaculty.setColor(updatedColor);
+        restTemplate.put(baseUrl, updatedFaculty);
+
+        ResponseEntity<FacultyWithoutStudents[]> oldColor = restTemplate.getForEntity(
+                baseUrl + "/color/" + testColor, FacultyWithoutStudents[].class);
+        ResponseEntity<FacultyWithoutStudents[]> newColor = restTemplate.getForEntity(
+                baseUrl + "/color/" + updatedColor, FacultyWithoutStudents[].class);
+
+        assertEquals(HttpStatus.NOT_FOUND, oldColor.getStatusCode(), "Старый цвет не должен находиться");
+        assertEquals(HttpStatus.OK, newColor.getStatusCode(), "Новый цвет должен находиться сразу после изменения");
+    }
+
     @Test
     void testSearchNonExistentFaculty() {
         // ПРОВЕРКА: База пуста
@@ -174,22 +174,10 @@ class FacultyControllerWebMvcTest {
     @Test
     void testGetAllFaculties() throws Exception {
         // Подготовка моков
-        Faculty faculty1 = new Faculty();
-        faculty1.setId(1L);
-        faculty1.setName(testName);
-        faculty1.setColor(testColor);
-
-        Faculty faculty2 = new Faculty();
-        faculty2.setId(2L);
-        faculty2.setName(testName2);
-        faculty2.setColor(testColor2);
-
         FacultyWithoutStudents facultyWithoutStudents1 = new FacultyWithoutStudents(1L, testName, testColor);
         FacultyWithoutStudents facultyWithoutStudents2 = new FacultyWithoutStudents(2L, testName2, testColor2);
 
-        Mockito.when(service.getAllFaculties()).thenReturn(List.of(faculty1, faculty2));
-        Mockito.when(facultyMapper.toFacultyWithoutStudents(faculty1)).thenReturn(facultyWithoutStudents1);
-        Mockito.when(facultyMapper.toFacultyWithoutStudents(faculty2)).thenReturn(facultyWithoutStudents2);
+        Mockito.when(service.getAllFaculties()).thenReturn(List.of(facultyWithoutStudents1, facultyWithoutStudents2));
 
         // Выполнение и проверка
         mockMvc.perform(MockMvcRequestBuilders
@@ -207,15 +195,9 @@ class FacultyControllerWebMvcTest {
     @Test
     void testGetFacultyByColor() throws Exception {
         // Подготовка моков
-        Faculty faculty = new Faculty();
-        faculty.setId(1L);
-        faculty.setName(testName);
-        faculty.setColor(testColor);
-
         FacultyWithoutStudents facultyWithoutStudents = new FacultyWithoutStudents(1L, testName, testColor);
 
-        Mockito.when(service.getFacultyByColor(testColor)).thenReturn(List.of(faculty));
-        Mockito.when(facultyMapper.toFacultyWithoutStudents(faculty)).thenReturn(facultyWithoutStudents);
+        Mockito.when(service.getFacultyByColor(testColor)).thenReturn(List.of(facultyWithoutStudents));
 
         // Выполнение и проверка
         mockMvc.perform(MockMvcRequestBuilders
@@ -242,21 +224,9 @@ class FacultyControllerWebMvcTest {
     @Test
     void testSearchFacultiesByNameOrColor() throws Exception {
         // Подготовка моков
-        Faculty faculty1 = new Faculty();
-        faculty1.setId(1L);
-        faculty1.setName(testName);
-        faculty1.setColor(testColor);
-
-        Faculty faculty2 = new Faculty();
-        faculty2.setId(2L);
-        faculty2.setName(testName2);
-        faculty2.setColor(testColor2);
-
         FacultyWithoutStudents facultyWithoutStudents1 = new FacultyWithoutStudents(1L, testName, testColor);
-        FacultyWithoutStudents facultyWithoutStudents2 = new FacultyWithoutStudents(2L, testName2, testColor2);
 
-        Mockito.when(service.getFacultiesByNameOrColor(testName)).thenReturn(List.of(faculty1));
-        Mockito.when(facultyMapper.toFacultyWithoutStudents(faculty1)).thenReturn(facultyWithoutStudents1);
+        Mockito.when(service.getFacultiesByNameOrColor(testName)).thenReturn(List.of(facultyWithoutStudents1));
 
         // Выполнение и проверка
         mockMvc.perform(MockMvcRequestBuilders
@@ -284,28 +254,14 @@ class FacultyControllerWebMvcTest {
 
     @Test
     void testGetStudentsByFacultyId() throws Exception {
-        // Подготовка моков - создаем студентов факультета
-        ru.hogwarts.school.model.Student student1 = new ru.hogwarts.school.model.Student();
-        student1.setId(1L);
-        student1.setName("testStudent1");
-        student1.setAge(11);
-
-        ru.hogwarts.school.model.Student student2 = new ru.hogwarts.school.model.Student();
-        student2.setId(2L);
-        student2.setName("testStudent2");
-        student2.setAge(11);
-
+        // Подготовка моков - студенты факультета
         ru.hogwarts.school.dto.StudentWithoutFaculty studentWithoutFaculty1 =
                 new ru.hogwarts.school.dto.StudentWithoutFaculty(1L, "testStudent1");
         ru.hogwarts.school.dto.StudentWithoutFaculty studentWithoutFaculty2 =
                 new ru.hogwarts.school.dto.StudentWithoutFaculty(2L, "testStudent2");
 
         // Настраиваем мок сервиса
-        Mockito.when(service.getStudentsByFacultyId(1L)).thenReturn(List.of(student1, student2));
-
-        // Настраиваем мок маппера студентов
-        Mockito.when(studentMapper.toStudentWithoutFaculty(student1)).thenReturn(studentWithoutFaculty1);
-        Mockito.when(studentMapper.toStudentWithoutFaculty(student2)).thenReturn(studentWithoutFaculty2);
+        Mockito.when(service.getStudentsByFacultyId(1L)).thenReturn(List.of(studentWithoutFaculty1, studentWithoutFaculty2));
 
         // Выполнение и проверка
         mockMvc.perform(MockMvcRequestBuilders
@@ -0,0 +1,131 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Своя БД: подключение R2DBC к H2 в памяти может держать базу открытой после закрытия контекста
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:reactive",
+        "spring.r2dbc.url=r2dbc:pool:h2:mem:///reactive"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ReactiveControllerIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+    private String baseUrl;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    private Faculty gryffindor;
+
+    @BeforeEach
+    void setUp() {
+        baseUrl = "http://localhost:" + port + "/reactive";
+        studentRepository.deleteAll();
+        facultyRepository.deleteAll();
+
+        gryffindor = new Faculty();
+        gryffindor.setName("Гриффиндор");
+        gryffindor.setColor("Красный");
+        gryffindor = facultyRepository.save(gryffindor);
+        Faculty slytherin = new Faculty();
+        slytherin.setName("Слизерин");
+        slytherin.setColor("Зелёный");
+        slytherin = facultyRepository.save(slytherin);
+
+        studentRepository.saveAll(List.of(
+                student("Гарри Поттер", 11, gryffindor),
+                student("Гермиона Грейнджер", 12, gryffindor),
+                student("Драко Малфой", 13, slytherin)));
+    }
+
+    @Test
+    void testStudentsAreStreamedAsNdjson() {
+        ResponseEntity<String> response = get("/students", MediaType.APPLICATION_NDJSON);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(MediaType.APPLICATION_NDJSON.isCompatibleWith(response.getHeaders().getContentType()));
+        List<String> lines = lines(response);
+        assertEquals(3, lines.size(), "Каждый студент - отдельная строка");
+        assertTrue(lines.get(0).contains("Гарри Поттер"), "Студенты должны идти в порядке id");
+    }
+
+    @Test
+    void testFiltersMirrorServletEndpoints() {
+        assertEquals(1, lines(get("/students/age/12", MediaType.APPLICATION_NDJSON)).size());
+        assertEquals(2, lines(get("/students/age-range?min=11&max=12", MediaType.APPLICATION_NDJSON)).size());
+        assertEquals(2, lines(get("/faculty/" + gryffindor.getId() + "/students", MediaType.APPLICATION_NDJSON)).size());
+        assertEquals(1, lines(get("/faculty/color/КРАСНЫЙ", MediaType.APPLICATION_NDJSON)).size(),
+                "Цвет должен искаться без учёта регистра");
+        assertEquals(1, lines(get("/faculty/search?query=слизерин", MediaType.APPLICATION_NDJSON)).size());
+        assertEquals(2, lines(get("/faculty", MediaType.APPLICATION_NDJSON)).size());
+    }
+
+    @Test
+    void testSearchByName() {
+        List<String> lines = lines(get("/students/search?q=ЕР", MediaType.APPLICATION_NDJSON));
+
+        assertEquals(2, lines.size(), "Поттер и Грейнджер содержат подстроку без учёта регистра");
+        assertTrue(lines.get(0).contains("Гарри Поттер"), "Более короткое имя ближе к запросу");
+        assertEquals(1, lines(get("/students/search?q=гер&limit=5", MediaType.APPLICATION_NDJSON)).size());
+        assertEquals(HttpStatus.BAD_REQUEST, get("/students/search?q= ", MediaType.APPLICATION_NDJSON).getStatusCode(),
+                "Пустой запрос - 400");
+    }
+
+    @Test
+    void testStudentsAreStreamedAsServerSentEvents() {
+        ResponseEntity<String> response = get("/students/age/11", MediaType.TEXT_EVENT_STREAM);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(MediaType.TEXT_EVENT_STREAM.isCompatibleWith(response.getHeaders().getContentType()));
+        assertNotNull(response.getBody());
+        assertTrue(response.getBody().startsWith("data:"), "Каждый студент - отдельное событие");
+        assertTrue(response.getBody().contains("Гарри Поттер"));
+    }
+
+    private ResponseEntity<String> get(String path, MediaType accept) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(accept));
+        return restTemplate.exchange(baseUrl + path, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    private static List<String> lines(ResponseEntity<String> response) {
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String body = response.getBody();
+        if (body == null || body.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(body.strip().split("\n")).toList();
+    }
+
+    private static Student student(String name, int age, Faculty faculty) {
+        Student student = new Student();
+        student.setName(name);
+        student.setAge(age);
+        student.setFaculty(faculty);
+        return student;
+    }
+}
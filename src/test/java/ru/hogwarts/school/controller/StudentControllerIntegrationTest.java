@@ -7,18 +7,27 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.test.annotation.DirtiesContext;
+import ru.hogwarts.school.dto.FacultyStudentStats;
 import ru.hogwarts.school.dto.FacultyWithoutStudents;
+import ru.hogwarts.school.dto.KeysetPage;
+import ru.hogwarts.school.dto.StudentImportResult;
 import ru.hogwarts.school.dto.StudentWithFaculty;
 import ru.hogwarts.school.dto.StudentWithoutFaculty;
+import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.support.SqlStatementCounter;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Import(SqlStatementCounter.class)
 class StudentControllerIntegrationTest {
     @LocalServerPort
     private int port;
@@ -33,11 +42,17 @@ class StudentControllerIntegrationTest {
     TestRestTemplate restTemplate;
     @Autowired
     StudentRepository studentRepository;
+    @Autowired
+    FacultyRepository facultyRepository;
+    @Autowired
+    SqlStatementCounter sqlStatementCounter;
 
     @BeforeEach
     void setUp() {
         baseUrl = "http://localhost:" + port + "/students";
+        // БД общая с другими тестовыми классами: факультеты от них тоже удаляются, после студентов из-за внешнего ключа
         studentRepository.deleteAll();
+        facultyRepository.deleteAll();
     }
 
     @Test
@@ -98,6 +113,62 @@ class StudentControllerIntegrationTest {
         assertEquals(testAge, response.getBody().age(), "Возраст должен совпадать");
     }
 
+    @Test
+    void testGetStudentWithFacultyUsesSingleQuery() {
+        // ПОДГОТОВКА: студент с факультетом
+        Faculty faculty = new Faculty();
+        faculty.setName("Гриффиндор");
+        faculty.setColor("красный");
+        facultyRepository.save(faculty);
+
+        Student student = new Student();
+        student.setName(testName);
+        student.setAge(testAge);
+        student.setFaculty(faculty);
+        Student savedStudent = studentRepository.save(student);
+
+        sqlStatementCounter.reset();
+        ResponseEntity<StudentWithFaculty> response = restTemplate.getForEntity(
+                baseUrl + "/" + savedStudent.getId(),
+                StudentWithFaculty.class
+        );
+
+        assertEquals(HttpStatus.OK, response.getStatusCode(), "HTTP статус должен быть 200 OK");
+        assertNotNull(response.getBody(), "Тело ответа не должно быть null");
+        assertNotNull(response.getBody().faculty(), "Факультет должен быть в ответе");
+        assertEquals("Гриффиндор", response.getBody().faculty().name(), "Название факультета должно совпадать");
+        assertEquals(1, sqlStatementCounter.count(), "Студент с факультетом должен читаться одним запросом");
+    }
+
+    @Test
+    void testListQueryCountDoesNotDependOnResultSize() {
+        Faculty faculty = new Faculty();
+        faculty.setName("Слизерин");
+        faculty.setColor("зелёный");
+        facultyRepository.save(faculty);
+
+        for (int size : new int[]{1, 5}) {
+            studentRepository.deleteAll();
+            for (int i = 0; i < size; i++) {
+                Student student = new Student();
+                student.setName("Студент " + i);
+                student.setAge(testAge);
+                student.setFaculty(faculty);
+                studentRepository.save(student);
+            }
+
+            sqlStatementCounter.reset();
+            ResponseEntity<StudentWithoutFaculty[]> response = restTemplate.getForEntity(
+                    baseUrl + "/age/" + testAge,
+                    StudentWithoutFaculty[].class
+            );
+
+            assertNotNull(response.getBody(), "Тело ответа не должно быть null");
+            assertEquals(size, response.getBody().length, "Должны вернуться все студенты этого возраста");
+            assertEquals(1, sqlStatementCounter.count(), "Список должен читаться одним запросом при любом размере");
+        }
+    }
+
     @Test
     void testGetNonExistentStudent() {
         // ПРОВЕРКА: База пуста перед тестом
@@ -158,6 +229,38 @@ class StudentControllerIntegrationTest {
         assertEquals(1, studentRepository.count(), "В базе должна остаться одна запись");
     }
 
+    @Test
+    void testUpdateStudentFaculty() {
+        Faculty faculty = new Faculty();
+        faculty.setName("Гриффиндор");
+        faculty.setColor("красный");
+        facultyRepository.save(faculty);
+
+        Student student = new Student();
+        student.setName(testName);
+        student.setAge(testAge);
+        Student savedStudent = studentRepository.save(student);
+
+        // Клиент передаёт только id факультета, название и цвет в ответе берутся из БД
+        Faculty facultyRef = new Faculty();
+        facultyRef.setId(faculty.getId());
+        Student updatedStudent = new Student();
+        updatedStudent.setId(savedStudent.getId());
+        updatedStudent.setName(updatedName);
+        updatedStudent.setAge(updatedAge);
+        updatedStudent.setFaculty(facultyRef);
+
+        ResponseEntity<StudentWithFaculty> response = restTemplate.exchange(
+                baseUrl, HttpMethod.PUT, new HttpEntity<>(updatedStudent), StudentWithFaculty.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode(), "HTTP статус должен быть 200 OK");
+        assertNotNull(response.getBody(), "Тело ответа не должно быть null");
+        assertNotNull(response.getBody().faculty(), "Факультет должен быть в ответе");
+        assertEquals("Гриффиндор", response.getBody().faculty().name(), "Факультет должен загружаться из БД");
+        assertEquals(faculty.getId(), studentRepository.findFacultyIdById(savedStudent.getId()).orElse(null),
+                "Факультет студента должен обновиться в базе");
+    }
+
     @Test
     void testDeleteStudent() {
         // ПРОВЕРКА: База пуста перед тестом
@@ -220,6 +323,56 @@ class StudentControllerIntegrationTest {
         assertEquals(2, response.getBody().length, "Должно вернуть двух студентов");
     }
 
+    @Test
+    void testGetStudentsPageByKeyset() {
+        // ПОДГОТОВКА: Добавляем трёх студентов
+        for (String name : new String[]{"Гарри Поттер", "Гермиона Грейнджер", "Рон Уизли"}) {
+            Student student = new Student();
+            student.setName(name);
+            student.setAge(11);
+            studentRepository.save(student);
+        }
+        ParameterizedTypeReference<KeysetPage<StudentWithoutFaculty>> pageType = new ParameterizedTypeReference<>() {
+        };
+
+        // Первая страница из двух студентов
+        ResponseEntity<KeysetPage<StudentWithoutFaculty>> first = restTemplate.exchange(
+                baseUrl + "/page?size=2", HttpMethod.GET, null, pageType);
+        assertEquals(HttpStatus.OK, first.getStatusCode(), "HTTP статус должен быть 200 OK");
+        assertNotNull(first.getBody(), "Тело ответа не должно быть null");
+        assertEquals(2, first.getBody().items().size(), "На первой странице должно быть два студента");
+        assertNotNull(first.getBody().nextAfterId(), "Должен быть курсор следующей страницы");
+
+        // Вторая (последняя) страница продолжается с курсора
+        ResponseEntity<KeysetPage<StudentWithoutFaculty>> second = restTemplate.exchange(
+                baseUrl + "/page?size=2&afterId=" + first.getBody().nextAfterId(), HttpMethod.GET, null, pageType);
+        assertNotNull(second.getBody(), "Тело ответа не должно быть null");
+        assertEquals(1, second.getBody().items().size(), "На второй странице должен быть один студент");
+        assertEquals("Рон Уизли", second.getBody().items().get(0).name());
+        assertNull(second.getBody().nextAfterId(), "Последняя страница не должна содержать курсор");
+    }
+
+    @Test
+    void testStreamStudentsAsNdjson() {
+        Student student1 = new Student();
+        student1.setName("Гермиона Грейнджер");
+        student1.setAge(11);
+        Student student2 = new Student();
+        student2.setName("Рон Уизли");
+        student2.setAge(11);
+        studentRepository.save(student1);
+        studentRepository.save(student2);
+
+        ResponseEntity<String> response = restTemplate.getForEntity(baseUrl + "/stream", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode(), "HTTP статус должен быть 200 OK");
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+        assertNotNull(response.getBody(), "Тело ответа не должно быть null");
+        String[] lines = response.getBody().strip().split("\n");
+        assertEquals(2, lines.length, "Каждый студент - отдельная строка");
+        assertTrue(lines[0].contains("Гермиона Грейнджер"), "Студенты должны идти в порядке id");
+    }
+
     @Test
     void testGetStudentByAge() {
         // ПРОВЕРКА: База пуста перед тестом
@@ -281,4 +434,241 @@ class StudentControllerIntegrationTest {
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode(), "Должен вернуть 404 для студента без факультета");
     }
 
+    @Test
+    void testBatchAddUpdateAndDeleteStudents() {
+        Student student1 = new Student();
+        student1.setName("Гарри Поттер");
+        student1.setAge(11);
+        Student student2 = new Student();
+        student2.setName("Рон Уизли");
+        student2.setAge(11);
+
+        // Добавление списком
+        ResponseEntity<StudentWithFaculty[]> added = restTemplate.postForEntity(
+                baseUrl + "/batch", new Student[]{student1, student2}, StudentWithFaculty[].class);
+        assertEquals(HttpStatus.OK, added.getStatusCode(), "HTTP статус должен быть 200 OK");
+        assertNotNull(added.getBody(), "Тело ответа не должно быть null");
+        assertEquals(2, added.getBody().length, "Должны вернуться оба студента");
+        assertEquals(2, studentRepository.count(), "В базе должно быть две записи");
+
+        // Обновление списком
+        Student update1 = new Student();
+        update1.setId(added.getBody()[0].id());
+        update1.setName(updatedName);
+        update1.setAge(updatedAge);
+        Student update2 = new Student();
+        update2.setId(added.getBody()[1].id());
+        update2.setName("Рон Уизли");
+        update2.setAge(12);
+        ResponseEntity<StudentWithFaculty[]> updated = restTemplate.exchange(baseUrl + "/batch", HttpMethod.PUT,
+                new HttpEntity<>(new Student[]{update1, update2}), StudentWithFaculty[].class);
+        assertEquals(HttpStatus.OK, updated.getStatusCode(), "HTTP статус должен быть 200 OK");
+        assertEquals(updatedName, studentRepository.findById(update1.getId()).orElseThrow().getName());
+        assertEquals(12, studentRepository.findById(update2.getId()).orElseThrow().getAge());
+
+        // Если одного студента нет, список не обновляется целиком
+        Student missing = new Student();
+        missing.setId(update2.getId() + 1000);
+        missing.setName(testName);
+        missing.setAge(testAge);
+        update1.setName(testName);
+        ResponseEntity<StudentWithFaculty[]> rejected = restTemplate.exchange(baseUrl + "/batch", HttpMethod.PUT,
+                new HttpEntity<>(new Student[]{update1, missing}), StudentWithFaculty[].class);
+        assertEquals(HttpStatus.BAD_REQUEST, rejected.getStatusCode(), "Должен вернуть 400, если студента нет");
+        assertEquals(updatedName, studentRepository.findById(update1.getId()).orElseThrow().getName(),
+                "Существующий студент не должен измениться");
+
+        // Удаление списком
+        restTemplate.exchange(baseUrl + "/batch", HttpMethod.DELETE,
+                new HttpEntity<>(new Long[]{update1.getId(), update2.getId()}), Void.class);
+        assertEquals(0, studentRepository.count(), "База должна быть пустой");
+    }
+
+    @Test
+    void testBatchAddResolvesFaculties() {
+        Faculty faculty = new Faculty();
+        faculty.setName("Пуффендуй");
+        faculty.setColor("жёлтый");
+        facultyRepository.save(faculty);
+
+        // Клиент присылает только id факультета
+        Student student = new Student();
+        student.setName(testName);
+        student.setAge(testAge);
+        Faculty facultyRef = new Faculty();
+        facultyRef.setId(faculty.getId());
+        student.setFaculty(facultyRef);
+        ResponseEntity<StudentWithFaculty[]> added = restTemplate.postForEntity(
+                baseUrl + "/batch", new Student[]{student}, StudentWithFaculty[].class);
+        assertEquals(HttpStatus.OK, added.getStatusCode(), "HTTP статус должен быть 200 OK");
+        assertNotNull(added.getBody(), "Тело ответа не должно быть null");
+        FacultyWithoutStudents responseFaculty = added.getBody()[0].faculty();
+        assertNotNull(responseFaculty, "В ответе должен быть факультет");
+        assertEquals("Пуффендуй", responseFaculty.name(), "Факультет должен быть загружен из базы");
+        assertEquals("жёлтый", responseFaculty.color());
+
+        // Неизвестный факультет - 400, ни один студент не сохраняется
+        long countBefore = studentRepository.count();
+        Student other = new Student();
+        other.setName(updatedName);
+        other.setAge(updatedAge);
+        Faculty unknownFaculty = new Faculty();
+        unknownFaculty.setId(faculty.getId() + 1000);
+        other.setFaculty(unknownFaculty);
+        ResponseEntity<String> rejected = restTemplate.postForEntity(
+                baseUrl + "/batch", new Student[]{student, other}, String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, rejected.getStatusCode(), "Должен вернуть 400, если факультета нет");
+        assertEquals(countBefore, studentRepository.count(), "Студенты не должны сохраниться");
+    }
+
+    @Test
+    void testBatchUpdateResolvesFaculties() {
+        Faculty faculty = new Faculty();
+        faculty.setName("Когтевран");
+        faculty.setColor("синий");
+        facultyRepository.save(faculty);
+        Student student = new Student();
+        student.setName(testName);
+        student.setAge(testAge);
+        Student saved = studentRepository.save(student);
+
+        // Клиент присылает только id факультета
+        Student update = new Student();
+        update.setId(saved.getId());
+        update.setName(updatedName);
+        update.setAge(updatedAge);
+        Faculty facultyRef = new Faculty();
+        facultyRef.setId(faculty.getId());
+        update.setFaculty(facultyRef);
+        ResponseEntity<StudentWithFaculty[]> updated = restTemplate.exchange(baseUrl + "/batch", HttpMethod.PUT,
+                new HttpEntity<>(new Student[]{update}), StudentWithFaculty[].class);
+        assertEquals(HttpStatus.OK, updated.getStatusCode(), "HTTP статус должен быть 200 OK");
+        assertNotNull(updated.getBody(), "Тело ответа не должно быть null");
+        FacultyWithoutStudents responseFaculty = updated.getBody()[0].faculty();
+        assertNotNull(responseFaculty, "В ответе должен быть факультет");
+        assertEquals("Когтевран", responseFaculty.name(), "Факультет должен быть загружен из базы");
+        assertEquals("синий", responseFaculty.color());
+
+        // Неизвестный факультет - 400, студент не меняется
+        Faculty unknownFaculty = new Faculty();
+        unknownFaculty.setId(faculty.getId() + 1000);
+        update.setFaculty(unknownFaculty);
+        update.setName(testName);
+        ResponseEntity<StudentWithFaculty[]> rejected = restTemplate.exchange(baseUrl + "/batch", HttpMethod.PUT,
+                new HttpEntity<>(new Student[]{update}), StudentWithFaculty[].class);
+        assertEquals(HttpStatus.BAD_REQUEST, rejected.getStatusCode(), "Должен вернуть 400, если факультета нет");
+        StudentWithFaculty stored = studentRepository.findStudentWithFacultyById(saved.getId()).orElseThrow();
+        assertEquals(updatedName, stored.name(), "Студент не должен измениться");
+        assertEquals(faculty.getId(), stored.faculty().id());
+    }
+
+    @Test
+    void testImportStudentsFromNdjsonIsBatched() {
+        int studentCount = 120;
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < studentCount; i++) {
+            body.append("{\"name\":\"Студент ").append(i).append("\",\"age\":").append(11 + i % 7).append("}\n");
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        sqlStatementCounter.reset();
+
+        ResponseEntity<StudentImportResult> response = restTemplate.postForEntity(
+                baseUrl + "/batch", new HttpEntity<>(body.toString(), headers), StudentImportResult.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode(), "HTTP статус должен быть 200 OK");
+        assertNotNull(response.getBody(), "Тело ответа не должно быть null");
+        assertEquals(studentCount, response.getBody().imported(), "Должны импортироваться все строки");
+        assertEquals(studentCount, studentRepository.count(), "Все студенты должны сохраниться");
+        // По одному INSERT на пачку из 50 и по одному обращению к последовательности на 50 id
+        assertTrue(sqlStatementCounter.count() < 20,
+                "Вставки должны идти пачками, а не по запросу на студента: " + sqlStatementCounter.count());
+    }
+
+    @Test
+    void testImportMalformedNdjsonIsRejected() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                baseUrl + "/batch", new HttpEntity<>("{\"name\":\n", headers), String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode(), "Некорректный NDJSON - 400");
+    }
+
+    @Test
+    void testAggregateStatistics() {
+        Faculty gryffindor = new Faculty();
+        gryffindor.setName("Гриффиндор");
+        gryffindor.setColor("красный");
+        facultyRepository.save(gryffindor);
+        Faculty slytherin = new Faculty();
+        slytherin.setName("Слизерин");
+        slytherin.setColor("зелёный");
+        facultyRepository.save(slytherin);
+
+        String[] names = {"Гарри Поттер", "Гермиона Грейнджер", "Рон Уизли"};
+        int[] ages = {11, 12, 13};
+        for (int i = 0; i < names.length; i++) {
+            Student student = new Student();
+            student.setName(names[i]);
+            student.setAge(ages[i]);
+            student.setFaculty(gryffindor);
+            studentRepository.save(student);
+        }
+
+        sqlStatementCounter.reset();
+        assertEquals(3L, restTemplate.getForObject(baseUrl + "/count", Long.class), "Количество студентов");
+        assertEquals(12.0, restTemplate.getForObject(baseUrl + "/average-age", Double.class), 1e-9, "Средний возраст");
+        assertEquals(2, sqlStatementCounter.count(), "Каждый агрегат должен считаться одним запросом");
+
+        StudentWithoutFaculty[] last = restTemplate.getForObject(baseUrl + "/last?count=2", StudentWithoutFaculty[].class);
+        assertNotNull(last, "Тело ответа не должно быть null");
+        assertEquals(2, last.length, "Должно вернуть двух последних студентов");
+        assertEquals("Рон Уизли", last[0].name(), "Сначала самый новый студент");
+
+        FacultyStudentStats[] stats = restTemplate.getForObject(baseUrl + "/faculty-stats", FacultyStudentStats[].class);
+        assertNotNull(stats, "Тело ответа не должно быть null");
+        assertEquals(2, stats.length, "Статистика по каждому факультету");
+        assertEquals(3, stats[0].studentCount());
+        assertEquals(12.0, stats[0].averageAge(), 1e-9);
+        assertEquals(0, stats[1].studentCount(), "Факультет без студентов тоже должен быть в статистике");
+        assertNull(stats[1].averageAge());
+    }
+
+    @Test
+    void testAverageAgeOfEmptyRosterIsZero() {
+        assertEquals(0L, restTemplate.getForObject(baseUrl + "/count", Long.class));
+        assertEquals(0.0, restTemplate.getForObject(baseUrl + "/average-age", Double.class), 1e-9);
+    }
+
+    @Test
+    void testSearchStudentsByName() {
+        for (String name : new String[]{"Гарри Поттер", "Гермиона Грейнджер", "Рон Уизли", "Джинни Уизли"}) {
+            Student student = new Student();
+            student.setName(name);
+            student.setAge(testAge);
+            studentRepository.save(student);
+        }
+
+        ResponseEntity<StudentWithoutFaculty[]> response = restTemplate.getForEntity(
+                baseUrl + "/search?q=уизли&limit=1", StudentWithoutFaculty[].class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode(), "HTTP статус должен быть 200 OK");
+        assertNotNull(response.getBody(), "Тело ответа не должно быть null");
+        assertEquals(1, response.getBody().length, "Результат должен ограничиваться лимитом");
+        assertEquals("Рон Уизли", response.getBody()[0].name());
+
+        Student student = new Student();
+        student.setName("Перси Уизли");
+        student.setAge(testAge);
+        restTemplate.postForEntity(baseUrl, student, StudentWithFaculty.class);
+
+        StudentWithoutFaculty[] found = restTemplate.getForObject(baseUrl + "/search?q=перс", StudentWithoutFaculty[].class);
+        assertNotNull(found, "Тело ответа не должно быть null");
+        assertEquals(1, found.length, "Студент, добавленный через API, должен сразу находиться");
+
+        assertEquals(HttpStatus.BAD_REQUEST,
+                restTemplate.getForEntity(baseUrl + "/search?q= ", String.class).getStatusCode(), "Пустой запрос - 400");
+    }
 }
@@ -75,16 +75,10 @@ class StudentControllerWebMvcTest {
 
     @Test
     void testGetStudentById() throws Exception {
-        // Подготовка моков
-        Student student = new Student();
-        student.setId(1L);
-        student.setName(testName);
-        student.setAge(testAge);
-
+        // Подготовка моков - сервис сразу возвращает проекцию
         StudentWithFaculty studentWithFaculty = new StudentWithFaculty(1L, testName, testAge, null);
 
-        Mockito.when(service.getStudent(1L)).thenReturn(student);
-        Mockito.when(mapper.toStudentWithFaculty(student)).thenReturn(studentWithFaculty);
+        Mockito.when(service.getStudentWithFaculty(1L)).thenReturn(studentWithFaculty);
 
         // Выполнение и проверка
         mockMvc.perform(MockMvcRequestBuilders
@@ -99,7 +93,7 @@ class StudentControllerWebMvcTest {
     @Test
     void testGetNonExistentStudent() throws Exception {
         // Подготовка моков
-        Mockito.when(service.getStudent(999L)).thenReturn(null);
+        Mockito.when(service.getStudentWithFaculty(999L)).thenReturn(null);
 
         // Выполнение и проверка
         mockMvc.perform(MockMvcRequestBuilders
@@ -181,17 +175,11 @@ class StudentControllerWebMvcTest {
 
     @Test
     void testGetStudentByAge() throws Exception {
-        // Подготовка моков - создаем студента нужного возраста
-        Student student = new Student();
-        student.setId(1L);
-        student.setName(testName);
-        student.setAge(11);
-
+        // Подготовка моков - студент нужного возраста
         StudentWithoutFaculty studentWithoutFaculty = new StudentWithoutFaculty(1L, testName);
 
         // Настраиваем мок сервиса чтобы возвращал студента
-        Mockito.when(service.getStudentByAge(11)).thenReturn(java.util.List.of(student));
-        Mockito.when(mapper.toStudentWithoutFaculty(student)).thenReturn(studentWithoutFaculty);
+        Mockito.when(service.getStudentByAge(11)).thenReturn(java.util.List.of(studentWithoutFaculty));
 
         // Выполнение и проверка
         mockMvc.perform(MockMvcRequestBuilders
@@ -216,24 +204,13 @@ class StudentControllerWebMvcTest {
 
     @Test
     void testGetStudentByAgeRange() throws Exception {
-        // Подготовка моков - создаем студентов в диапазоне
-        Student student1 = new Student();
-        student1.setId(1L);
-        student1.setName("Студент 1");
-        student1.setAge(11);
-
-        Student student2 = new Student();
-        student2.setId(2L);
-        student2.setName("Студент 2");
-        student2.setAge(12);
-
+        // Подготовка моков - студенты в диапазоне
         StudentWithoutFaculty studentWithoutFaculty1 = new StudentWithoutFaculty(1L, "Студент 1");
         StudentWithoutFaculty studentWithoutFaculty2 = new StudentWithoutFaculty(2L, "Студент 2");
 
         // Настраиваем мок сервиса
-        Mockito.when(service.getStudentByAgeBetween(10, 12)).thenReturn(java.util.List.of(student1, student2));
-        Mockito.when(mapper.toStudentWithoutFaculty(student1)).thenReturn(studentWithoutFaculty1);
-        Mockito.when(mapper.toStudentWithoutFaculty(student2)).thenReturn(studentWithoutFaculty2);
+        Mockito.when(service.getStudentByAgeBetween(10, 12))
+                .thenReturn(java.util.List.of(studentWithoutFaculty1, studentWithoutFaculty2));
 
         // Выполнение и проверка
         mockMvc.perform(MockMvcRequestBuilders
@@ -265,15 +242,9 @@ class StudentControllerWebMvcTest {
     @Test
     void testGetFacultyByStudentId() throws Exception {
         // Подготовка моков для метода getFacultyByStudentId
-        Faculty faculty = new Faculty();
-        faculty.setId(1L);
-        faculty.setName("Гриффиндор");
-        faculty.setColor("красный");
-
         FacultyWithoutStudents facultyWithoutStudents = new FacultyWithoutStudents(1L, "Гриффиндор", "красный");
 
-        Mockito.when(service.getFacultyByStudentId(1L)).thenReturn(faculty);
-        Mockito.when(facultyMapper.toFacultyWithoutStudents(faculty)).thenReturn(facultyWithoutStudents);
+        Mockito.when(service.getFacultyByStudentId(1L)).thenReturn(facultyWithoutStudents);
 
         // Выполнение и проверка
         mockMvc.perform(MockMvcRequestBuilders
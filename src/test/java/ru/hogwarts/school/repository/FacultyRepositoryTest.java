@@ -0,0 +1,61 @@
+package ru.hogwarts.school.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import ru.hogwarts.school.dto.FacultyWithoutStudents;
+import ru.hogwarts.school.model.Faculty;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class FacultyRepositoryTest {
+    @Autowired
+    FacultyRepository facultyRepository;
+    @Autowired
+    EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        String[][] faculties = {
+                {"Гриффиндор", "Красный"}, {"Слизерин", "Зелёный"}, {"Когтевран", "Синий"}, {"Пуффендуй", "Жёлтый"}
+        };
+        for (String[] data : faculties) {
+            Faculty faculty = new Faculty();
+            faculty.setName(data[0]);
+            faculty.setColor(data[1]);
+            facultyRepository.save(faculty);
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    void testLookupsIgnoreCase() {
+        assertEquals(List.of("Слизерин"), facultyRepository.findByColorNormalized(Faculty.normalize("ЗЕЛЁНЫЙ")).stream()
+                .map(FacultyWithoutStudents::name)
+                .toList());
+
+        List<Faculty> found = facultyRepository.findByNameNormalizedOrColorNormalized(
+                Faculty.normalize("гриффиндор"), Faculty.normalize("гриффиндор"));
+        assertEquals(List.of("Гриффиндор"), found.stream().map(Faculty::getName).toList(),
+                "Факультет, совпавший по одному условию, должен вернуться один раз");
+    }
+
+    @Test
+    void testNameOrColorLookupUsesBothIndexes() {
+        String sql = FacultyRepository.FIND_BY_NAME_OR_COLOR_SQL
+                .replace(":name", "'слизерин'")
+                .replace(":color", "'синий'");
+
+        String plan = entityManager.createNativeQuery("EXPLAIN " + sql).getSingleResult().toString()
+                .toLowerCase(Locale.ROOT);
+
+        assertTrue(plan.contains("idx_faculty_name_normalized"), "Поиск по названию должен идти по индексу: " + plan);
+        assertTrue(plan.contains("idx_faculty_color_normalized"), "Поиск по цвету должен идти по индексу: " + plan);
+    }
+}
@@ -0,0 +1,40 @@
+package ru.hogwarts.school.repository;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class StudentNameSearchRepositoryTest {
+    private final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    private final StudentNameSearchRepository repository =
+            new StudentNameSearchRepository(mock(JdbcTemplate.class), registry);
+
+    @BeforeEach
+    void setUp() {
+        // Так же Spring Boot регистрирует таймер для метода Spring Data репозитория
+        Timer.builder(StudentNameSearchRepository.METRIC)
+                .tag("repository", "StudentRepository")
+                .tag("method", "findByAge")
+                .tag("state", "SUCCESS")
+                .tag("exception", "None")
+                .register(registry)
+                .record(Duration.ofMillis(1));
+    }
+
+    @Test
+    void testSearchTimerIsScrapedAlongsideRepositoryTimers() {
+        repository.search("гарри", 20);
+
+        String scrape = registry.scrape();
+        assertTrue(scrape.contains("method=\"search\""), "Таймер поиска должен попасть в /actuator/prometheus");
+        assertTrue(scrape.contains("method=\"findByAge\""), "Таймеры репозиториев не должны пропасть");
+    }
+}
@@ -0,0 +1,60 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AvatarMetricsTest {
+    private static final byte[] PNG = {
+            (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D, 'I', 'H', 'D', 'R'
+    };
+
+    @TempDir
+    Path avatarsDir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private AvatarStorage storage;
+    private AvatarPreviewCache previewCache;
+
+    @BeforeEach
+    void setUp() {
+        storage = new AvatarStorage(avatarsDir.toString());
+        previewCache = new AvatarPreviewCache(1000);
+    }
+
+    @Test
+    void testStorageGaugesCountStoredFiles() throws IOException {
+        new AvatarMetrics(storage, previewCache, 0).bindTo(registry);
+        storage.storeStreaming(new ByteArrayInputStream(PNG), 1024);
+
+        assertEquals(1, registry.get("avatar.storage.files").gauge().value());
+        assertEquals(PNG.length, registry.get("avatar.storage.size").gauge().value());
+    }
+
+    @Test
+    void testStorageSizeIsCachedBetweenRefreshes() throws IOException {
+        new AvatarMetrics(storage, previewCache, 3600).bindTo(registry);
+        assertEquals(0, registry.get("avatar.storage.files").gauge().value());
+
+        storage.storeStreaming(new ByteArrayInputStream(PNG), 1024);
+
+        assertEquals(0, registry.get("avatar.storage.files").gauge().value(),
+                "Каталог не должен обходиться чаще, чем раз в интервал обновления");
+    }
+
+    @Test
+    void testMissingDirectoryReportsZero() throws IOException {
+        Files.delete(avatarsDir);
+        new AvatarMetrics(storage, previewCache, 0).bindTo(registry);
+
+        assertEquals(0, registry.get("avatar.storage.size").gauge().value());
+    }
+}
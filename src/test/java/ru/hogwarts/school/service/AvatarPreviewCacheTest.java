@@ -0,0 +1,62 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.AvatarPreview;
+import ru.hogwarts.school.dto.PreviewCacheStats;
+import ru.hogwarts.school.model.PreviewStatus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvatarPreviewCacheTest {
+    private static final int WIDTH = 128;
+
+    private AvatarPreview preview(int size) {
+        return new AvatarPreview(new byte[size], "image/png", PreviewStatus.READY);
+    }
+
+    @Test
+    void testHitAndMissAreCounted() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(1000);
+        cache.put(1L, WIDTH, preview(100));
+
+        assertNotNull(cache.get(1L, WIDTH), "Превью должно быть найдено в кеше");
+        assertNull(cache.get(2L, WIDTH), "Для другого студента превью в кеше нет");
+
+        PreviewCacheStats stats = cache.getStats();
+        assertEquals(1, stats.hits(), "Должно быть одно попадание");
+        assertEquals(1, stats.misses(), "Должен быть один промах");
+        assertEquals(100, stats.sizeBytes(), "Размер кеша должен совпадать с размером превью");
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvictedWhenBudgetExceeded() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(250);
+        cache.put(1L, WIDTH, preview(100));
+        cache.put(2L, WIDTH, preview(100));
+        cache.get(1L, WIDTH); // студент 1 теперь использован недавно
+        cache.put(3L, WIDTH, preview(100));
+
+        assertNotNull(cache.get(1L, WIDTH), "Недавно использованное превью должно остаться");
+        assertNull(cache.get(2L, WIDTH), "Давно не использованное превью должно быть вытеснено");
+        assertNotNull(cache.get(3L, WIDTH), "Новое превью должно быть в кеше");
+
+        PreviewCacheStats stats = cache.getStats();
+        assertEquals(1, stats.evictions(), "Должно быть одно вытеснение");
+        assertEquals(200, stats.sizeBytes(), "Размер кеша не должен превышать бюджет");
+    }
+
+    @Test
+    void testInvalidateRemovesAllWidthsOfStudent() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(1000);
+        cache.put(1L, WIDTH, preview(100));
+        cache.put(1L, 2 * WIDTH, preview(200));
+        cache.put(2L, WIDTH, preview(100));
+
+        cache.invalidate(1L);
+
+        assertNull(cache.get(1L, WIDTH), "После инвалидации превью не должно быть в кеше");
+        assertNull(cache.get(1L, 2 * WIDTH), "Превью других ширин тоже должны быть удалены");
+        assertNotNull(cache.get(2L, WIDTH), "Превью другого студента должно остаться");
+        assertEquals(100, cache.getStats().sizeBytes(), "В кеше должно остаться одно превью");
+    }
+}
@@ -0,0 +1,88 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.hogwarts.school.model.AvatarRendition;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvatarPreviewServiceTest {
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Сервис без зависимостей: для генерации превью БД и пул не нужны
+    private final AvatarPreviewService service =
+            new AvatarPreviewService(null, null, null, null, meterRegistry, new int[]{256, 64, 128}, 128, 16);
+
+    private Path writeImage(String fileName, int width, int height) throws IOException {
+        Path path = tempDir.resolve(fileName);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ImageIO.write(image, "png", path.toFile());
+        return path;
+    }
+
+    @Test
+    void testRenditionsForAllWidthsAreGenerated() throws IOException {
+        Path path = writeImage("1.png", 400, 200);
+
+        List<AvatarRendition> renditions = service.generateRenditions(path);
+
+        assertEquals(List.of(64, 128, 256), renditions.stream().map(AvatarRendition::getWidth).toList(),
+                "Должны быть превью всех ширин по возрастанию");
+        assertEquals(32, renditions.get(0).getHeight(), "Высота должна сохранять пропорции");
+        assertEquals("image/png", renditions.get(0).getMediaType(), "Формат превью должен совпадать с оригиналом");
+        assertTrue(renditions.stream().allMatch(r -> r.getFileSize() == r.getData().length),
+                "Размер превью должен совпадать с длиной данных");
+        assertEquals(1, meterRegistry.get("avatar.preview.generation").tag("outcome", "success").timer().count(),
+                "Время генерации должно попасть в метрику");
+    }
+
+    @Test
+    void testSmallImageIsNotUpscaled() throws IOException {
+        Path path = writeImage("2.png", 100, 100);
+
+        List<AvatarRendition> renditions = service.generateRenditions(path);
+
+        assertEquals(List.of(64, 100), renditions.stream().map(AvatarRendition::getWidth).toList(),
+                "Превью не должно быть шире оригинала");
+    }
+
+    @Test
+    void testLargeImageIsDecodedWithSubsampling() throws IOException {
+        // 3000 / 256 = 11: декодируется изображение шириной 273, этого хватает на все превью
+        Path path = writeImage("4.png", 3000, 1500);
+
+        List<AvatarRendition> renditions = service.generateRenditions(path);
+
+        assertEquals(List.of(64, 128, 256), renditions.stream().map(AvatarRendition::getWidth).toList(),
+                "Прореживание не должно уменьшать превью");
+        assertEquals(128, renditions.get(2).getHeight(), "Высота должна сохранять пропорции");
+    }
+
+    @Test
+    void testNotAnImageProducesNoRenditions() throws IOException {
+        Path path = tempDir.resolve("3.png");
+        Files.writeString(path, "not an image");
+
+        assertTrue(service.generateRenditions(path).isEmpty(), "Для не-изображения превью нет");
+        assertEquals(1, meterRegistry.get("avatar.preview.generation").tag("outcome", "not-an-image").timer().count());
+    }
+
+    @Test
+    void testResolveWidthPicksNearestNotSmallerWidth() {
+        assertEquals(64, service.resolveWidth(10));
+        assertEquals(128, service.resolveWidth(100));
+        assertEquals(256, service.resolveWidth(1000), "Для слишком большой ширины - наибольшее превью");
+        assertEquals(128, service.resolveWidth(null), "Без подсказки - ширина по умолчанию");
+    }
+}
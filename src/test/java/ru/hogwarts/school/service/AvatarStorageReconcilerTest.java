@@ -0,0 +1,199 @@
+package ru.hogwarts.school.service;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarRendition;
+import ru.hogwarts.school.model.PreviewStatus;
+import ru.hogwarts.school.repository.AvatarRenditionRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class AvatarStorageReconcilerTest {
+    @TempDir
+    Path avatarsDir;
+
+    @Autowired
+    AvatarRepository avatarRepository;
+    @Autowired
+    AvatarRenditionRepository renditionRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    EntityManager entityManager;
+
+    @Test
+    void testMissingFilesAreOnlyReportedByDefault() throws IOException {
+        saveAvatar("a", true);
+        saveAvatar("b", false);
+
+        assertEquals(0, reconciler(avatarsDir, false).removeOrphanedRows());
+        assertEquals(2, avatarRepository.count(), "Без явного включения записи не удаляются");
+    }
+
+    @Test
+    void testRecordWithoutFileIsRemovedWhenEnabled() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            saveAvatar("present" + i, true);
+        }
+        saveAvatar("missing", false);
+
+        assertEquals(1, reconciler(avatarsDir, true).removeOrphanedRows());
+        assertEquals(10, avatarRepository.count());
+        assertFalse(avatarRepository.existsByContentHash(hash("missing")));
+        assertFalse(renditionRepository.existsByContentHash(hash("missing")), "Превью без ссылок удаляются вместе с записью");
+        assertTrue(renditionRepository.existsByContentHash(hash("present0")));
+    }
+
+    @Test
+    void testNothingIsRemovedWhenTooManyFilesAreMissing() throws IOException {
+        saveAvatar("a", true);
+        saveAvatar("b", false);
+        saveAvatar("c", false);
+
+        assertEquals(0, reconciler(avatarsDir, true).removeOrphanedRows(),
+                "Массовая пропажа файлов - признак неверного каталога, а не потери данных");
+        assertEquals(3, avatarRepository.count());
+    }
+
+    @Test
+    void testNothingIsRemovedWhenDirectoryIsMissing() throws IOException {
+        saveAvatar("a", false);
+
+        assertEquals(0, reconciler(avatarsDir.resolve("unmounted"), true).removeOrphanedRows());
+        assertEquals(1, avatarRepository.count(), "Без каталога аватаров записи не проверяются");
+    }
+
+    @Test
+    void testReplacedFileIsSweptAfterGracePeriod() throws IOException {
+        AvatarStorage storage = new AvatarStorage(avatarsDir.toString());
+        StoredContent replaced = storage.storeStreaming(new ByteArrayInputStream(png(1)), 1024);
+        StoredContent current = storage.storeStreaming(new ByteArrayInputStream(png(2)), 1024);
+        saveAvatar(current);
+        AvatarStorageReconciler reconciler = sweeper(storage, true, 0.5);
+
+        assertFalse(storage.deleteUnused(replaced.filePath()), "Только что загруженный файл сразу не удаляется");
+        assertEquals(0, reconciler.removeOrphanedFiles());
+        assertTrue(Files.exists(replaced.filePath()));
+
+        Instant afterGracePeriod = Instant.now().minus(storage.getGracePeriod()).minusSeconds(60);
+        Files.setLastModifiedTime(replaced.filePath(), FileTime.from(afterGracePeriod));
+        Files.setLastModifiedTime(current.filePath(), FileTime.from(afterGracePeriod));
+        reconciler.sweepOrphanedFiles();
+
+        assertFalse(Files.exists(replaced.filePath()), "Файл без ссылок удаляется плановой сверкой после grace-периода");
+        assertTrue(Files.exists(current.filePath()), "Файл, на который ссылается аватар, остаётся");
+    }
+
+    @Test
+    void testOrphanedFilesAreOnlyReportedByDefault() throws IOException {
+        AvatarStorage storage = new AvatarStorage(avatarsDir.toString());
+        StoredContent orphaned = storeStale(storage, 1);
+        saveAvatar(storeStale(storage, 2));
+
+        assertEquals(0, sweeper(storage, false, 0.5).removeOrphanedFiles());
+        assertTrue(Files.exists(orphaned.filePath()), "Без avatar.storage.sweep-enabled файлы не удаляются");
+    }
+
+    @Test
+    void testNoFilesAreRemovedWhenAvatarTableIsEmpty() throws IOException {
+        AvatarStorage storage = new AvatarStorage(avatarsDir.toString());
+        StoredContent content = storeStale(storage, 1);
+
+        assertEquals(0, sweeper(storage, true, 1.0).removeOrphanedFiles());
+        assertTrue(Files.exists(content.filePath()), "Пустая таблица аватаров - признак не той БД, а не мусора");
+    }
+
+    @Test
+    void testNoFilesAreRemovedWhenTooManyAreOrphaned() throws IOException {
+        AvatarStorage storage = new AvatarStorage(avatarsDir.toString());
+        StoredContent first = storeStale(storage, 1);
+        StoredContent second = storeStale(storage, 2);
+        saveAvatar(storeStale(storage, 3));
+
+        assertEquals(0, sweeper(storage, true, 0.1).removeOrphanedFiles());
+        assertTrue(Files.exists(first.filePath()));
+        assertTrue(Files.exists(second.filePath()));
+
+        assertEquals(2, sweeper(storage, true, 1.0).removeOrphanedFiles());
+        assertFalse(Files.exists(first.filePath()));
+        assertFalse(Files.exists(second.filePath()));
+    }
+
+    private StoredContent storeStale(AvatarStorage storage, int marker) throws IOException {
+        StoredContent content = storage.storeStreaming(new ByteArrayInputStream(png(marker)), 1024);
+        Instant afterGracePeriod = Instant.now().minus(storage.getGracePeriod()).minusSeconds(60);
+        Files.setLastModifiedTime(content.filePath(), FileTime.from(afterGracePeriod));
+        return content;
+    }
+
+    private AvatarStorageReconciler sweeper(AvatarStorage storage, boolean sweepEnabled, double maxMissingRatio) {
+        return new AvatarStorageReconciler(storage, avatarRepository, renditionRepository, jdbcTemplate,
+                new TransactionTemplate(transactionManager), false, sweepEnabled, false, maxMissingRatio);
+    }
+
+    private AvatarStorageReconciler reconciler(Path directory, boolean deleteMissingRows) {
+        return reconciler(new AvatarStorage(directory.toString()), deleteMissingRows);
+    }
+
+    private AvatarStorageReconciler reconciler(AvatarStorage storage, boolean deleteMissingRows) {
+        return new AvatarStorageReconciler(storage, avatarRepository, renditionRepository, jdbcTemplate,
+                new TransactionTemplate(transactionManager), false, false, deleteMissingRows, 0.1);
+    }
+
+    private void saveAvatar(StoredContent content) {
+        Avatar avatar = new Avatar();
+        avatar.setFilePath(content.filePath().toString());
+        avatar.setFileSize(content.fileSize());
+        avatar.setMediaType(content.format().getMediaType());
+        avatar.setContentHash(content.contentHash());
+        avatar.setPreviewStatus(PreviewStatus.READY);
+        avatarRepository.save(avatar);
+        entityManager.flush();
+    }
+
+    private static byte[] png(int marker) {
+        return new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D, 'I', 'H', 'D', 'R',
+                (byte) marker};
+    }
+
+    private void saveAvatar(String name, boolean withFile) throws IOException {
+        Path file = avatarsDir.resolve(name + ".png");
+        if (withFile) {
+            Files.write(file, new byte[]{1, 2, 3});
+        }
+        Avatar avatar = new Avatar();
+        avatar.setFilePath(file.toString());
+        avatar.setFileSize(3);
+        avatar.setMediaType("image/png");
+        avatar.setContentHash(hash(name));
+        avatar.setPreviewStatus(PreviewStatus.READY);
+        avatarRepository.save(avatar);
+
+        AvatarRendition rendition = new AvatarRendition(64, 64, "image/png", new byte[]{4, 5, 6});
+        rendition.setContentHash(hash(name));
+        renditionRepository.save(rendition);
+        entityManager.flush();
+    }
+
+    private static String hash(String name) {
+        return (name + "0".repeat(64)).substring(0, 64);
+    }
+}
@@ -0,0 +1,95 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvatarStorageTest {
+    private static final byte[] PNG = {
+            (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D, 'I', 'H', 'D', 'R'
+    };
+
+    @TempDir
+    Path avatarsDir;
+
+    @Test
+    void testStreamingUploadIsHashedAndStoredInOnePass() throws IOException {
+        AvatarStorage storage = new AvatarStorage(avatarsDir.toString());
+
+        StoredContent content = storage.storeStreaming(new ByteArrayInputStream(PNG), 1024);
+
+        assertEquals(storage.hash(new ByteArrayInputStream(PNG)), content.contentHash(), "Хеш должен совпадать с хешем содержимого");
+        assertEquals(AvatarImageFormat.PNG, content.format(), "Формат должен определяться по сигнатуре");
+        assertEquals(storage.resolve(content.contentHash(), "png"), content.filePath(), "Файл должен лежать в шарде по хешу");
+        assertArrayEquals(PNG, Files.readAllBytes(content.filePath()), "Содержимое файла должно совпадать с загрузкой");
+        assertEquals(PNG.length, content.fileSize());
+        assertTrue(content.created(), "Новое содержимое должно быть записано");
+        assertNoTempFiles();
+    }
+
+    @Test
+    void testSameContentIsNotWrittenTwice() throws IOException {
+        AvatarStorage storage = new AvatarStorage(avatarsDir.toString());
+        storage.storeStreaming(new ByteArrayInputStream(PNG), 1024);
+
+        StoredContent second = storage.storeStreaming(new ByteArrayInputStream(PNG), 1024);
+
+        assertFalse(second.created(), "Файл с тем же содержимым уже есть на диске");
+        assertNoTempFiles();
+    }
+
+    @Test
+    void testReusedContentIsNotDeletedWithinGracePeriod() throws IOException {
+        AvatarStorage storage = new AvatarStorage(avatarsDir.toString(), Duration.ofHours(1));
+        StoredContent content = storage.storeStreaming(new ByteArrayInputStream(PNG), 1024);
+        Files.setLastModifiedTime(content.filePath(), FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+
+        assertFalse(storage.storeStreaming(new ByteArrayInputStream(PNG), 1024).created());
+
+        assertFalse(storage.deleteUnused(content.filePath()), "Повторная загрузка должна продлить жизнь файла");
+        assertTrue(Files.exists(content.filePath()));
+
+        Files.setLastModifiedTime(content.filePath(), FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+        assertTrue(storage.deleteUnused(content.filePath()), "Давно не использованный файл должен удаляться");
+        assertFalse(Files.exists(content.filePath()));
+    }
+
+    @Test
+    void testNotAnImageIsRejected() {
+        AvatarStorage storage = new AvatarStorage(avatarsDir.toString());
+        byte[] text = "definitely not an image".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> storage.storeStreaming(new ByteArrayInputStream(text), 1024));
+    }
+
+    @Test
+    void testTooLargeUploadIsRejectedAndTempFileRemoved() throws IOException {
+        AvatarStorage storage = new AvatarStorage(avatarsDir.toString());
+
+        assertThrows(AvatarTooLargeException.class,
+                () -> storage.storeStreaming(new ByteArrayInputStream(PNG), PNG.length - 1));
+        assertNoTempFiles();
+    }
+
+    private void assertNoTempFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(avatarsDir)) {
+            assertTrue(files.noneMatch(storage()::isTempFile), "Временных файлов остаться не должно");
+        }
+    }
+
+    private AvatarStorage storage() {
+        return new AvatarStorage(avatarsDir.toString());
+    }
+}
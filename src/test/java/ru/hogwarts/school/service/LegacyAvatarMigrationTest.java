@@ -0,0 +1,133 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.repository.AvatarRenditionRepository;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тест добавляет в схему колонки старых версий, а DDL в H2 коммитится сразу: тесты выполняются
+// без общей откатываемой транзакции, сами очищают таблицы, а контекст с изменённой схемой после них закрывается
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+class LegacyAvatarMigrationTest {
+    @TempDir
+    Path avatarsDir;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    AvatarRenditionRepository renditionRepository;
+
+    private AvatarStorage storage;
+    private LegacyAvatarMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        // Колонки, которые были в схеме до переноса превью в avatar_renditions
+        jdbcTemplate.execute("ALTER TABLE avatars ADD COLUMN IF NOT EXISTS data BLOB");
+        jdbcTemplate.execute("ALTER TABLE avatar_renditions ADD COLUMN IF NOT EXISTS avatar_id BIGINT");
+        jdbcTemplate.update("DELETE FROM avatar_renditions");
+        jdbcTemplate.update("DELETE FROM avatars");
+
+        storage = new AvatarStorage(avatarsDir.toString());
+        migration = new LegacyAvatarMigration(jdbcTemplate, new TransactionTemplate(transactionManager),
+                renditionRepository, storage);
+    }
+
+    @Test
+    void testLegacyAvatarIsMigrated() throws IOException {
+        Path file = avatarsDir.resolve("1.png");
+        Files.write(file, png(300, 150));
+        long avatarId = insertLegacyAvatar(file, png(100, 50));
+        jdbcTemplate.update("INSERT INTO avatar_renditions (width, height, file_size, media_type, data, avatar_id) "
+                + "VALUES (64, 32, 3, 'image/png', ?, ?)", new byte[]{1, 2, 3}, avatarId);
+
+        migration.run(null);
+
+        String contentHash = storage.hash(file);
+        Map<String, Object> avatar = jdbcTemplate.queryForMap(
+                "SELECT content_hash, preview_status, data FROM avatars WHERE id = ?", avatarId);
+        assertEquals(contentHash, avatar.get("CONTENT_HASH"), "Хеш должен вычисляться по файлу на диске");
+        assertEquals("READY", avatar.get("PREVIEW_STATUS"), "Перенесённое превью уже готово");
+        assertNull(avatar.get("DATA"), "Превью должно уйти из avatars.data");
+
+        assertEquals(List.of(64, 100), renditionWidths(contentHash),
+                "Превью из avatars.data переносится с размерами из заголовка, старое превью перепривязывается");
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM avatar_renditions WHERE avatar_id IS NOT NULL OR content_hash IS NULL",
+                Integer.class), "Превью не должны остаться привязанными к avatar_id");
+    }
+
+    @Test
+    void testRepeatedRunChangesNothing() throws IOException {
+        Path file = avatarsDir.resolve("2.png");
+        Files.write(file, png(300, 150));
+        long avatarId = insertLegacyAvatar(file, png(100, 50));
+        migration.run(null);
+        List<Map<String, Object>> avatarsAfterFirstRun = jdbcTemplate.queryForList("SELECT * FROM avatars");
+        List<Map<String, Object>> renditionsAfterFirstRun = jdbcTemplate.queryForList(
+                "SELECT id, width, content_hash FROM avatar_renditions ORDER BY id");
+
+        migration.run(null);
+
+        assertEquals(avatarsAfterFirstRun, jdbcTemplate.queryForList("SELECT * FROM avatars"));
+        assertEquals(renditionsAfterFirstRun, jdbcTemplate.queryForList(
+                "SELECT id, width, content_hash FROM avatar_renditions ORDER BY id"),
+                "Повторный запуск не должен дублировать превью");
+        assertEquals(storage.hash(file), jdbcTemplate.queryForObject(
+                "SELECT content_hash FROM avatars WHERE id = ?", String.class, avatarId));
+    }
+
+    @Test
+    void testAvatarWithMissingFileKeepsItsPreview() throws IOException {
+        long avatarId = insertLegacyAvatar(avatarsDir.resolve("missing.png"), png(100, 50));
+
+        migration.run(null);
+
+        Map<String, Object> avatar = jdbcTemplate.queryForMap(
+                "SELECT content_hash, data FROM avatars WHERE id = ?", avatarId);
+        assertNull(avatar.get("CONTENT_HASH"), "Без файла хеш вычислить нельзя");
+        assertNotNull(avatar.get("DATA"), "Превью без хеша некуда переносить - оно остаётся на месте");
+        assertEquals(0, renditionRepository.count());
+    }
+
+    private long insertLegacyAvatar(Path file, byte[] preview) {
+        jdbcTemplate.update("INSERT INTO avatars (file_path, file_size, media_type, data) VALUES (?, ?, 'image/png', ?)",
+                file.toString(), 0L, preview);
+        return jdbcTemplate.queryForObject("SELECT max(id) FROM avatars", Long.class);
+    }
+
+    private List<Integer> renditionWidths(String contentHash) {
+        return jdbcTemplate.queryForList(
+                "SELECT width FROM avatar_renditions WHERE content_hash = ? ORDER BY width", Integer.class, contentHash);
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,83 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.StudentAgeSummary;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.*;
+
+class StudentAgeIndexTest {
+    private StudentRepository studentRepository;
+    private StudentAgeIndex index;
+
+    @BeforeEach
+    void setUp() {
+        studentRepository = mock(StudentRepository.class);
+        when(studentRepository.findAllAgeSummaries()).thenReturn(List.of(
+                new StudentAgeSummary(3, "Гермиона", 12),
+                new StudentAgeSummary(1, "Гарри", 11),
+                new StudentAgeSummary(2, "Рон", 11),
+                new StudentAgeSummary(4, "Дамблдор", 200)
+        ));
+        index = new StudentAgeIndex(studentRepository, true, 150);
+    }
+
+    @Test
+    void testFindByAgeAndRange() {
+        assertEquals(List.of(new StudentWithoutFaculty(1, "Гарри"), new StudentWithoutFaculty(2, "Рон")),
+                index.findByAge(11), "Студенты одного возраста должны идти в порядке id");
+        assertEquals(List.of(new StudentWithoutFaculty(1, "Гарри"), new StudentWithoutFaculty(2, "Рон"),
+                        new StudentWithoutFaculty(3, "Гермиона")),
+                index.findByAgeBetween(11, 12));
+        assertEquals(List.of(new StudentWithoutFaculty(4, "Дамблдор")), index.findByAgeBetween(100, 300),
+                "Возраст вне диапазона корзин тоже должен находиться");
+        assertEquals(List.of(), index.findByAgeBetween(13, 11), "Пустой диапазон");
+        verify(studentRepository, times(1)).findAllAgeSummaries();
+    }
+
+    @Test
+    void testPutAndRemoveKeepIndexInSync() {
+        index.findByAge(11);
+
+        index.put(5, "Невилл", 11);
+        index.put(2, "Рон", 13);
+        index.remove(3);
+
+        assertEquals(List.of(new StudentWithoutFaculty(1, "Гарри"), new StudentWithoutFaculty(5, "Невилл")),
+                index.findByAge(11));
+        assertEquals(List.of(new StudentWithoutFaculty(2, "Рон")), index.findByAge(13));
+        assertEquals(List.of(), index.findByAge(12), "Удалённый студент не должен находиться");
+        verify(studentRepository, times(1)).findAllAgeSummaries();
+    }
+
+    @Test
+    void testCountByAge() {
+        assertEquals(List.of(new AgeCount(11, 2), new AgeCount(12, 1), new AgeCount(200, 1)), index.countByAge());
+    }
+
+    @Test
+    void testCountAndAverageAge() {
+        assertEquals(4, index.count());
+        assertEquals((11 + 11 + 12 + 200) / 4.0, index.averageAge(), 1e-9);
+
+        index.remove(4);
+
+        assertEquals(3, index.count());
+        assertEquals((11 + 11 + 12) / 3.0, index.averageAge(), 1e-9);
+    }
+
+    @Test
+    void testAverageAgeOfEmptyIndexIsNull() {
+        when(studentRepository.findAllAgeSummaries()).thenReturn(List.of());
+
+        assertEquals(0, index.count());
+        assertNull(index.averageAge());
+    }
+}
@@ -0,0 +1,62 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.StudentWithoutFaculty;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class StudentNameIndexTest {
+    private StudentRepository studentRepository;
+    private StudentNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        studentRepository = mock(StudentRepository.class);
+        when(studentRepository.findAllSummaries()).thenReturn(List.of(
+                new StudentWithoutFaculty(1, "Гарри Поттер"),
+                new StudentWithoutFaculty(2, "Гермиона Грейнджер"),
+                new StudentWithoutFaculty(3, "Рон Уизли"),
+                new StudentWithoutFaculty(4, "Джинни Уизли"),
+                new StudentWithoutFaculty(5, "Поттеровед")
+        ));
+        index = new StudentNameIndex(studentRepository, true);
+    }
+
+    @Test
+    void testSubstringSearchIsRankedByPrefixThenWordStart() {
+        assertEquals(List.of(new StudentWithoutFaculty(5, "Поттеровед"), new StudentWithoutFaculty(1, "Гарри Поттер")),
+                index.search("поттер", 10), "Совпадение с начала имени должно быть выше совпадения с начала слова");
+        assertEquals(List.of(new StudentWithoutFaculty(3, "Рон Уизли"), new StudentWithoutFaculty(4, "Джинни Уизли")),
+                index.search("УИЗ", 10), "Поиск без учёта регистра, при равном ранге - короткие имена выше");
+        assertEquals(List.of(new StudentWithoutFaculty(2, "Гермиона Грейнджер")), index.search("иона", 10),
+                "Подстрока в середине слова тоже должна находиться");
+        assertEquals(List.of(), index.search("малфой", 10));
+    }
+
+    @Test
+    void testShortQueriesAndLimit() {
+        assertEquals(List.of(new StudentWithoutFaculty(1, "Гарри Поттер")), index.search("г", 1),
+                "Результат должен обрезаться по лимиту после ранжирования");
+        assertEquals(2, index.search("ли", 10).size());
+    }
+
+    @Test
+    void testPutAndRemoveKeepIndexInSync() {
+        index.search("рон", 10);
+
+        index.put(6, "Невилл Долгопупс");
+        index.put(3, "Рональд Уизли");
+        index.remove(1);
+
+        assertEquals(List.of(new StudentWithoutFaculty(6, "Невилл Долгопупс")), index.search("долго", 10));
+        assertEquals(List.of(new StudentWithoutFaculty(3, "Рональд Уизли")), index.search("рональд", 10));
+        assertEquals(List.of(new StudentWithoutFaculty(5, "Поттеровед")), index.search("поттер", 10),
+                "Удалённый студент не должен находиться");
+        verify(studentRepository, times(1)).findAllSummaries();
+    }
+}
@@ -0,0 +1,26 @@
+package ru.hogwarts.school.support;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Считает SQL-запросы, подготовленные Hibernate. Подключается к тесту через {@code @Import}:
+ * статистика Hibernate включается только в контексте таких тестов
+ */
+public class SqlStatementCounter {
+    private final Statistics statistics;
+
+    public SqlStatementCounter(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.statistics.setStatisticsEnabled(true);
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+
+    public long count() {
+        return statistics.getPrepareStatementCount();
+    }
+}